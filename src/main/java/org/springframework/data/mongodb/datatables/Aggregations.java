@@ -0,0 +1,191 @@
+package org.springframework.data.mongodb.datatables;
+
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs aggregation pipelines built from the queries of a {@link DataTablesCriteria}, with the same field mapping,
+ * collation and index hint as the find and count queries.
+ */
+final class Aggregations {
+
+    private final MongoEntityInformation<?, ?> metadata;
+    private final MongoOperations mongoOperations;
+    private final QueryMapper queryMapper;
+    private final MongoPersistentEntity<?> entity;
+
+    Aggregations(MongoEntityInformation<?, ?> metadata, MongoOperations mongoOperations) {
+        this.metadata = metadata;
+        this.mongoOperations = mongoOperations;
+        this.queryMapper = new QueryMapper(mongoOperations.getConverter());
+        this.entity = mongoOperations.getConverter().getMappingContext().getPersistentEntity(metadata.getJavaType());
+    }
+
+    /**
+     * Returns the {@code $match} stage equivalent to the filter of the given query.
+     */
+    Document match(Query query) {
+        return new Document("$match", filter(query));
+    }
+
+    /**
+     * Returns the filter of the given query, with the names of the fields storing the properties.
+     */
+    Document filter(Query query) {
+        return queryMapper.getMappedObject(query.getQueryObject(), entity);
+    }
+
+    /**
+     * Returns the filter of the given query, with its values converted but its property names unchanged, for the
+     * pipelines whose documents are not entities.
+     */
+    Document untypedFilter(Query query) {
+        return queryMapper.getMappedObject(query.getQueryObject(), (MongoPersistentEntity<?>) null);
+    }
+
+    /**
+     * Returns the given filter, with the names of the fields storing the properties, for the clauses of an
+     * {@link #untypedFilter(Query) untyped filter} which apply to the documents of the collection.
+     */
+    Document filter(Document filter) {
+        return queryMapper.getMappedObject(filter, entity);
+    }
+
+    /**
+     * Returns the {@code $sort} stage equivalent to the sort of the given query, or {@code null} if it is not sorted.
+     */
+    Document sort(Query query) {
+        Document sort = query.getSortObject();
+        return sort.isEmpty() ? null : new Document("$sort", queryMapper.getMappedSort(sort, entity));
+    }
+
+    /**
+     * Returns a copy of the given mapped filter, matching the sub-document at the given path (for example
+     * {@code fullDocument.} in a change stream) instead of the root document. The field paths of {@code $expr}
+     * expressions are not rewritten.
+     */
+    static Document prefix(Document filter, String path) {
+        Document prefixed = new Document();
+        filter.forEach((key, value) -> {
+            if ("$and".equals(key) || "$or".equals(key) || "$nor".equals(key)) {
+                List<Object> clauses = new ArrayList<>();
+                for (Object clause : (List<?>) value) {
+                    clauses.add(clause instanceof Document ? prefix((Document) clause, path) : clause);
+                }
+                prefixed.append(key, clauses);
+            } else if (key.startsWith("$")) {
+                prefixed.append(key, value);
+            } else {
+                prefixed.append(path + key, value);
+            }
+        });
+        return prefixed;
+    }
+
+    /**
+     * Returns the name of the field storing the given property, for example {@code _id} for the {@code id} property.
+     */
+    String field(String property) {
+        return queryMapper.getMappedFields(new Document(property, 1), entity).keySet().iterator().next();
+    }
+
+    /**
+     * Returns the plan of the find equivalent to the given query, without executing it.
+     */
+    Document explain(Query query) {
+        return mongoOperations.execute(metadata.getCollectionName(), collection -> find(collection, filter(query), query)
+                .skip((int) query.getSkip())
+                .limit(query.getLimit())
+                .explain(ExplainVerbosity.QUERY_PLANNER));
+    }
+
+    /**
+     * Returns up to the given number of documents matching the given filter (with the names of the fields storing the
+     * properties), with the sort, the collation and the hint of the given query. The cursor is closed once they are
+     * read.
+     */
+    List<Document> find(Document filter, Query query, int limit, ReadPreference readPreference) {
+        return mongoOperations.execute(metadata.getCollectionName(),
+                collection -> find(readPreference == null ? collection : collection.withReadPreference(readPreference), filter, query)
+                        .limit(limit)
+                        .into(new ArrayList<>()));
+    }
+
+    private FindIterable<Document> find(MongoCollection<Document> collection, Document filter, Query query) {
+        FindIterable<Document> iterable = collection.find(filter);
+        Document sort = sort(query);
+        if (sort != null) {
+            iterable.sort(sort.get("$sort", Document.class));
+        }
+        query.getCollation().ifPresent(collation -> iterable.collation(collation.toMongoCollation()));
+        String hint = query.getHint();
+        if (hint != null) {
+            if (isKeyPattern(hint)) {
+                iterable.hint(Document.parse(hint));
+            } else {
+                iterable.hintString(hint);
+            }
+        }
+        return iterable;
+    }
+
+    /**
+     * Runs the given pipeline with the collation and the hint of the given query.
+     */
+    List<Document> aggregate(List<Document> pipeline, Query query, ReadPreference readPreference) {
+        return mongoOperations.execute(metadata.getCollectionName(),
+                collection -> aggregate(collection, pipeline, query, readPreference).into(new ArrayList<>()));
+    }
+
+    /**
+     * Runs the given pipeline like {@link #aggregate(List, Query, ReadPreference)}, but returns its results as a stream,
+     * read from the server as it is consumed. The stream must be closed.
+     */
+    Stream<Document> stream(List<Document> pipeline, Query query, ReadPreference readPreference) {
+        MongoCursor<Document> cursor = mongoOperations.execute(metadata.getCollectionName(),
+                collection -> aggregate(collection, pipeline, query, readPreference).cursor());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+                .onClose(cursor::close);
+    }
+
+    private static AggregateIterable<Document> aggregate(MongoCollection<Document> collection, List<Document> pipeline, Query query,
+                                                         ReadPreference readPreference) {
+        AggregateIterable<Document> iterable = (readPreference == null ? collection : collection.withReadPreference(readPreference))
+                .aggregate(pipeline)
+                .allowDiskUse(true);
+        query.getCollation().ifPresent(collation -> iterable.collation(collation.toMongoCollation()));
+        String hint = query.getHint();
+        if (hint != null) {
+            if (isKeyPattern(hint)) {
+                iterable.hint(Document.parse(hint));
+            } else {
+                iterable.hintString(hint);
+            }
+        }
+        return iterable;
+    }
+
+    /**
+     * Returns whether the given hint is the key pattern of an index (as a JSON document) rather than its name.
+     */
+    private static boolean isKeyPattern(String hint) {
+        return hint.trim().startsWith("{");
+    }
+}
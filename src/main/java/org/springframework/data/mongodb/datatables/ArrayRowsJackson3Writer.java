@@ -0,0 +1,115 @@
+package org.springframework.data.mongodb.datatables;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.MapperFeature;
+import tools.jackson.databind.SerializationContext;
+import tools.jackson.databind.ValueSerializer;
+import tools.jackson.databind.ser.BeanPropertyWriter;
+import tools.jackson.databind.ser.PropertyWriter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Jackson 3 {@link RowsWriter}, for the current serialization.
+ */
+final class ArrayRowsJackson3Writer extends RowsWriter<BeanPropertyWriter, RuntimeException> {
+
+    /**
+     * The key of the visible properties of each class, cached in the attributes of the {@link SerializationContext},
+     * and thus for the current serialization (and its active view) only.
+     */
+    private static final Object PROPERTIES = ArrayRowsJackson3Writer.class;
+
+    private final JsonGenerator gen;
+    private final SerializationContext context;
+
+    ArrayRowsJackson3Writer(JsonGenerator gen, SerializationContext context) {
+        this.gen = gen;
+        this.context = context;
+    }
+
+    @Override
+    void writeStartArray() {
+        gen.writeStartArray();
+    }
+
+    @Override
+    void writeEndArray() {
+        gen.writeEndArray();
+    }
+
+    @Override
+    void writeNull() {
+        gen.writeNull();
+    }
+
+    @Override
+    void writeRow(Object row) {
+        // the serializers are resolved once per class by the context
+        context.writeValue(gen, row);
+    }
+
+    @Override
+    void writeLeaf(Object value) {
+        context.writeValue(gen, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    BeanPropertyWriter getProperty(Class<?> type, String name) {
+        Map<Class<?>, Map<String, BeanPropertyWriter>> properties = (Map<Class<?>, Map<String, BeanPropertyWriter>>) context.getAttribute(PROPERTIES);
+        if (properties == null) {
+            properties = new HashMap<>();
+            context.setAttribute(PROPERTIES, properties);
+        }
+
+        Map<String, BeanPropertyWriter> writers = properties.get(type);
+        if (writers == null) {
+            ValueSerializer<Object> serializer = context.findValueSerializer(type);
+            writers = new HashMap<>();
+            for (Iterator<PropertyWriter> iterator = serializer.properties(); iterator.hasNext(); ) {
+                PropertyWriter writer = iterator.next();
+                if (writer instanceof BeanPropertyWriter && isVisible((BeanPropertyWriter) writer)) {
+                    writers.put(writer.getName(), (BeanPropertyWriter) writer);
+                }
+            }
+            writers = Collections.unmodifiableMap(writers);
+            properties.put(type, writers);
+        }
+        return writers.get(name);
+    }
+
+    @Override
+    Object get(BeanPropertyWriter property, Object bean) {
+        try {
+            return property.get(bean);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns whether the given property is included in the active view, with the same rules as the bean serializer.
+     */
+    private boolean isVisible(BeanPropertyWriter writer) {
+        Class<?> activeView = context.getActiveView();
+        if (activeView == null) {
+            return true;
+        }
+        Class<?>[] views = writer.getViews();
+        if (views == null) {
+            return context.isEnabled(MapperFeature.DEFAULT_VIEW_INCLUSION);
+        }
+        for (Class<?> view : views) {
+            if (view.isAssignableFrom(activeView)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
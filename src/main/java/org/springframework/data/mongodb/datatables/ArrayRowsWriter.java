@@ -0,0 +1,122 @@
+package org.springframework.data.mongodb.datatables;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Jackson 2 {@link RowsWriter}, for the current serialization.
+ */
+final class ArrayRowsWriter extends RowsWriter<BeanPropertyWriter, IOException> {
+
+    /**
+     * The key of the visible properties of each class, cached in the attributes of the {@link SerializerProvider}, and
+     * thus for the current serialization (and its active view) only.
+     */
+    private static final Object PROPERTIES = ArrayRowsWriter.class;
+
+    private final JsonGenerator gen;
+    private final SerializerProvider provider;
+    private Class<?> rowClass;
+    private JsonSerializer<Object> rowSerializer;
+
+    ArrayRowsWriter(JsonGenerator gen, SerializerProvider provider) {
+        this.gen = gen;
+        this.provider = provider;
+    }
+
+    @Override
+    void writeStartArray() throws IOException {
+        gen.writeStartArray();
+    }
+
+    @Override
+    void writeEndArray() throws IOException {
+        gen.writeEndArray();
+    }
+
+    @Override
+    void writeNull() throws IOException {
+        gen.writeNull();
+    }
+
+    @Override
+    void writeRow(Object row) throws IOException {
+        // the serializer is resolved once per class instead of once per row
+        if (row.getClass() != rowClass) {
+            rowClass = row.getClass();
+            rowSerializer = provider.findTypedValueSerializer(rowClass, true, null);
+        }
+        rowSerializer.serialize(row, gen, provider);
+    }
+
+    @Override
+    void writeLeaf(Object value) throws IOException {
+        provider.defaultSerializeValue(value, gen);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    BeanPropertyWriter getProperty(Class<?> type, String name) throws IOException {
+        Map<Class<?>, Map<String, BeanPropertyWriter>> properties = (Map<Class<?>, Map<String, BeanPropertyWriter>>) provider.getAttribute(PROPERTIES);
+        if (properties == null) {
+            properties = new HashMap<>();
+            provider.setAttribute(PROPERTIES, properties);
+        }
+
+        Map<String, BeanPropertyWriter> writers = properties.get(type);
+        if (writers == null) {
+            JsonSerializer<Object> serializer = provider.findValueSerializer(type);
+            writers = new HashMap<>();
+            for (Iterator<PropertyWriter> iterator = serializer.properties(); iterator.hasNext(); ) {
+                PropertyWriter writer = iterator.next();
+                if (writer instanceof BeanPropertyWriter && isVisible((BeanPropertyWriter) writer)) {
+                    writers.put(writer.getName(), (BeanPropertyWriter) writer);
+                }
+            }
+            writers = Collections.unmodifiableMap(writers);
+            properties.put(type, writers);
+        }
+        return writers.get(name);
+    }
+
+    @Override
+    Object get(BeanPropertyWriter property, Object bean) throws IOException {
+        try {
+            return property.get(bean);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns whether the given property is included in the active view, with the same rules as the bean serializer.
+     */
+    private boolean isVisible(BeanPropertyWriter writer) {
+        Class<?> activeView = provider.getActiveView();
+        if (activeView == null) {
+            return true;
+        }
+        Class<?>[] views = writer.getViews();
+        if (views == null) {
+            return provider.isEnabled(MapperFeature.DEFAULT_VIEW_INCLUSION);
+        }
+        for (Class<?> view : views) {
+            if (view.isAssignableFrom(activeView)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,167 @@
+package org.springframework.data.mongodb.datatables;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Appends the filters of a {@link DataTablesCriteria} to a base aggregation pipeline (a "view" over the collection).
+ * <p>
+ * Each clause of the filter is moved before the stages which leave the fields it references untouched
+ * ({@code $match}, {@code $sort}, and the {@code $addFields}, {@code $set}, {@code $unset}, {@code $project},
+ * {@code $unwind} and {@code $lookup} stages which do not write them), so that it is applied as early as possible,
+ * ideally on the collection itself where it can use an index. The other stages ({@code $group}, {@code $unionWith},
+ * {@code $limit}...) are never crossed. The clauses moved before the first stage apply to the documents of the
+ * collection, so their property names are mapped to the names of the fields (for example {@code id} to {@code _id}).
+ */
+final class BasePipeline {
+
+    private final List<Document> stages;
+
+    BasePipeline(List<Document> stages) {
+        this.stages = stages;
+    }
+
+    /**
+     * Returns the stages of the base pipeline, with the clauses of the given filter inserted as early as possible.
+     *
+     * @param filter           the filter, with the names of the fields of the documents of the pipeline
+     * @param collectionMapper maps the property names of the clauses inserted before the first stage
+     */
+    List<Document> withFilter(Document filter, UnaryOperator<Document> collectionMapper) {
+        List<Document> clauses = new ArrayList<>();
+        filter.forEach((key, value) -> {
+            if ("$and".equals(key)) {
+                for (Object clause : (List<?>) value) {
+                    clauses.add((Document) clause);
+                }
+            } else {
+                clauses.add(new Document(key, value));
+            }
+        });
+
+        // the clauses to insert before each stage, the last position being the end of the pipeline
+        List<List<Document>> matches = new ArrayList<>();
+        for (int i = 0; i <= stages.size(); i++) {
+            matches.add(new ArrayList<>());
+        }
+        for (Document clause : clauses) {
+            Set<String> fields = new HashSet<>();
+            collectFields(clause, fields);
+            int position = stages.size();
+            while (position > 0 && preserves(stages.get(position - 1), fields)) {
+                position--;
+            }
+            matches.get(position).add(clause);
+        }
+
+        List<Document> pipeline = new ArrayList<>();
+        for (int i = 0; i <= stages.size(); i++) {
+            List<Document> match = matches.get(i);
+            if (!match.isEmpty()) {
+                Document pushed = match.size() == 1 ? match.get(0) : new Document("$and", match);
+                pipeline.add(new Document("$match", i == 0 ? collectionMapper.apply(pushed) : pushed));
+            }
+            if (i < stages.size()) {
+                pipeline.add(stages.get(i));
+            }
+        }
+        return pipeline;
+    }
+
+    private static void collectFields(Document clause, Set<String> fields) {
+        clause.forEach((key, value) -> {
+            if ("$and".equals(key) || "$or".equals(key) || "$nor".equals(key)) {
+                for (Object subClause : (List<?>) value) {
+                    collectFields((Document) subClause, fields);
+                }
+            } else if (key.startsWith("$")) {
+                // $expr, $text, $where...: the referenced fields are unknown
+                fields.add("");
+            } else {
+                fields.add(key);
+            }
+        });
+    }
+
+    /**
+     * Returns whether the given stage keeps the given fields (and the order of the documents) unchanged.
+     */
+    private static boolean preserves(Document stage, Set<String> fields) {
+        if (stage.size() != 1 || fields.contains("")) {
+            return false;
+        }
+        String operator = stage.keySet().iterator().next();
+        Object specification = stage.get(operator);
+        switch (operator) {
+            case "$match":
+            case "$sort":
+                return true;
+            case "$addFields":
+            case "$set":
+                return specification instanceof Map && !overlaps(((Map<?, ?>) specification).keySet(), fields);
+            case "$unset":
+                return !overlaps(specification instanceof Collection ? (Collection<?>) specification : List.of(specification), fields);
+            case "$project":
+                return specification instanceof Map && preservedByProjection((Map<?, ?>) specification, fields);
+            case "$unwind":
+                Object path = specification instanceof Map ? ((Map<?, ?>) specification).get("path") : specification;
+                Object index = specification instanceof Map ? ((Map<?, ?>) specification).get("includeArrayIndex") : null;
+                List<Object> written = new ArrayList<>();
+                written.add(path instanceof String ? ((String) path).substring(1) : "");
+                if (index != null) {
+                    written.add(index);
+                }
+                return !overlaps(written, fields);
+            case "$lookup":
+                return specification instanceof Map && !overlaps(List.of(String.valueOf(((Map<?, ?>) specification).get("as"))), fields);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns whether the given projection only includes or excludes fields, and keeps the given ones.
+     */
+    private static boolean preservedByProjection(Map<?, ?> projection, Set<String> fields) {
+        List<Object> included = new ArrayList<>();
+        List<Object> excluded = new ArrayList<>();
+        for (Map.Entry<?, ?> entry : projection.entrySet()) {
+            Object value = entry.getValue();
+            if (Boolean.TRUE.equals(value) || value instanceof Number && ((Number) value).intValue() != 0) {
+                included.add(entry.getKey());
+            } else if (Boolean.FALSE.equals(value) || value instanceof Number) {
+                excluded.add(entry.getKey());
+            } else {
+                return false;
+            }
+        }
+        if (!included.isEmpty()) {
+            // _id is included unless excluded
+            return fields.stream().allMatch(field -> !overlaps(excluded, Set.of(field))
+                    && (isWithin(field, "_id") || included.stream().anyMatch(include -> isWithin(field, include.toString()))));
+        }
+        return !overlaps(excluded, fields);
+    }
+
+    private static boolean overlaps(Collection<?> written, Set<String> fields) {
+        for (Object path : written) {
+            for (String field : fields) {
+                if (isWithin(field, path.toString()) || isWithin(path.toString(), field)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWithin(String field, String path) {
+        return field.equals(path) || field.startsWith(path + ".");
+    }
+}
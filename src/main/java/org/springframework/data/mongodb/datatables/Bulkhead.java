@@ -0,0 +1,108 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control of the queries of a collection, see {@link DataTablesBulkhead}.
+ */
+final class Bulkhead {
+
+    /**
+     * The bulkheads by namespace ({@code database.collection}), shared by the repositories of the same collection.
+     */
+    private static final ConcurrentMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    private final String collectionName;
+    private final DataTablesBulkhead configuration;
+    private final Semaphore permits;
+    private final Semaphore expensivePermits;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private Bulkhead(String collectionName, DataTablesBulkhead configuration) {
+        this.collectionName = collectionName;
+        this.configuration = configuration;
+        this.permits = new Semaphore(configuration.maxConcurrent(), true);
+        this.expensivePermits = new Semaphore(configuration.maxConcurrentExpensive(), true);
+    }
+
+    /**
+     * Returns the bulkhead of the given collection, created with the given configuration if it does not exist yet.
+     *
+     * @throws IllegalStateException if another repository of the collection declares other limits
+     */
+    static Bulkhead of(String namespace, String collectionName, DataTablesBulkhead configuration) {
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(namespace, name -> new Bulkhead(collectionName, configuration));
+        if (!bulkhead.configuration.equals(configuration)) {
+            throw new IllegalStateException("The repositories of the collection " + namespace + " declare different @DataTablesBulkhead limits");
+        }
+        return bulkhead;
+    }
+
+    boolean isExpensive(DataTablesInput input) {
+        if (input.getLength() == -1 || input.getStart() >= configuration.largeSkip()) {
+            return true;
+        }
+        if (isRegex(input.getSearch())) {
+            return true;
+        }
+        return input.getColumns().stream().anyMatch(column -> isRegex(column.getSearch()));
+    }
+
+    private static boolean isRegex(DataTablesInput.Search search) {
+        return search != null && search.getSearchMode() == DataTablesInput.Search.SearchMode.REGEX
+                && search.getValue() != null && !search.getValue().trim().isEmpty();
+    }
+
+    /**
+     * Waits for the permits required by a query, up to the configured timeout (or not at all if {@code wait} is
+     * {@code false}). Only the queries which could not get a permit immediately count as waiting.
+     *
+     * @return a description of the rejection, or {@code null} if the permits were acquired
+     */
+    String acquire(boolean expensive, boolean wait) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait ? configuration.waitTimeoutMillis() : 0);
+        if (expensive) {
+            String rejection = acquire(expensivePermits, deadline, "Too many expensive queries on the collection ");
+            if (rejection != null) {
+                return rejection;
+            }
+        }
+        String rejection = acquire(permits, deadline, "Too many queries on the collection ");
+        if (rejection != null && expensive) {
+            expensivePermits.release();
+        }
+        return rejection;
+    }
+
+    private String acquire(Semaphore semaphore, long deadline, String rejection) throws InterruptedException {
+        // unlike tryAcquire(), honors the fairness of the semaphore
+        if (semaphore.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+            return null;
+        }
+        long timeout = deadline - System.nanoTime();
+        if (timeout <= 0) {
+            return rejection + collectionName;
+        }
+
+        if (waiting.incrementAndGet() > configuration.maxWaiting()) {
+            waiting.decrementAndGet();
+            return "Too many queries waiting on the collection " + collectionName;
+        }
+        try {
+            return semaphore.tryAcquire(timeout, TimeUnit.NANOSECONDS) ? null : rejection + collectionName;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    void release(boolean expensive) {
+        permits.release();
+        if (expensive) {
+            expensivePermits.release();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * The cursors of the pages delivered in chunks, see {@link DataTablesMaxLength}.
+ * <p>
+ * The expired cursors are closed in the background, so that their server-side cursors are released even when no more
+ * chunks are requested, until {@link #close()}.
+ */
+final class ChunkedCursors {
+
+    private final DataTablesMaxLength configuration;
+    private final long timeToLiveMillis;
+    private final ConcurrentMap<String, Cursor> cursors = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+
+    ChunkedCursors(DataTablesMaxLength configuration, String collectionName) {
+        this.configuration = configuration;
+        this.timeToLiveMillis = TimeUnit.SECONDS.toMillis(configuration.cursorTimeToLiveSeconds());
+        this.evictor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("datatables-cursors-" + collectionName).factory());
+        long periodMillis = Math.max(timeToLiveMillis, 1000);
+        evictor.scheduleWithFixedDelay(this::evictExpired, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    int getChunkSize() {
+        return configuration.value();
+    }
+
+    /**
+     * Keeps the given cursor open, and returns its token, or {@code null} if too many cursors are open (in which case
+     * the cursor is closed).
+     *
+     * @param input     the input of the records to read, used to admit the reads of the following chunks
+     * @param remaining the number of records to read, or -1 to read them all. The stream may contain one more record,
+     *                  which is not returned but tells whether there is a next page.
+     */
+    @SuppressWarnings("unchecked")
+    <T, R> String open(Stream<T> stream, Function<T, R> converter, DataTablesInput input, long remaining) {
+        evictExpired();
+        if (cursors.size() >= configuration.maxOpenCursors()) {
+            stream.close();
+            return null;
+        }
+        String token = UUID.randomUUID().toString();
+        cursors.put(token, new Cursor(stream, (Function<Object, Object>) converter, input, remaining,
+                System.currentTimeMillis() + timeToLiveMillis));
+        return token;
+    }
+
+    /**
+     * Returns the input of the given cursor, or {@code null} if it is unknown or expired.
+     */
+    DataTablesInput getInput(String token) {
+        Cursor cursor = cursors.get(token);
+        return cursor == null ? null : cursor.input;
+    }
+
+    /**
+     * Returns the next chunk of the given cursor, with the token of the cursor if it is not exhausted yet.
+     */
+    @SuppressWarnings("unchecked")
+    <R> DataTablesOutput<R> next(String token) {
+        DataTablesOutput<R> output = new DataTablesOutput<>();
+        Cursor cursor = cursors.get(token);
+        if (cursor == null) {
+            output.setError("Unknown or expired cursor token " + token);
+            return output;
+        }
+
+        synchronized (cursor) {
+            if (cursor.expiresAt < System.currentTimeMillis()) {
+                // not evicted yet
+                close(token);
+            }
+            if (cursors.get(token) != cursor) {
+                // evicted or exhausted while waiting for the lock
+                output.setError("Unknown or expired cursor token " + token);
+                return output;
+            }
+            try {
+                List<R> rows = new ArrayList<>();
+                while (rows.size() < configuration.value() && cursor.remaining != 0 && cursor.iterator.hasNext()) {
+                    Object row = cursor.iterator.next();
+                    rows.add((R) (cursor.converter == null ? row : cursor.converter.apply(row)));
+                    if (cursor.remaining > 0) {
+                        cursor.remaining--;
+                    }
+                }
+                output.setData(rows);
+
+                if (cursor.remaining == 0 || !cursor.iterator.hasNext()) {
+                    output.setHasNext(cursor.remaining == 0 && cursor.iterator.hasNext());
+                    close(token);
+                } else {
+                    output.setNextChunkToken(token);
+                    cursor.expiresAt = System.currentTimeMillis() + timeToLiveMillis;
+                }
+            } catch (RuntimeException e) {
+                output.setError(e.toString());
+                close(token);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Closes all the cursors, and stops the background eviction.
+     */
+    void close() {
+        evictor.shutdownNow();
+        cursors.keySet().forEach(this::close);
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Cursor> entry : cursors.entrySet()) {
+            Cursor cursor = entry.getValue();
+            if (cursor.expiresAt < now) {
+                // a cursor being read is only closed once read, and only if it was not read again in the meantime
+                synchronized (cursor) {
+                    if (cursor.expiresAt < now) {
+                        close(entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    private void close(String token) {
+        Cursor cursor = cursors.remove(token);
+        if (cursor != null) {
+            synchronized (cursor) {
+                cursor.stream.close();
+            }
+        }
+    }
+
+    private static final class Cursor {
+
+        private final Stream<?> stream;
+        private final Iterator<?> iterator;
+        private final Function<Object, Object> converter;
+        private final DataTablesInput input;
+        private long remaining;
+        private volatile long expiresAt;
+
+        private Cursor(Stream<?> stream, Function<Object, Object> converter, DataTablesInput input, long remaining, long expiresAt) {
+            this.stream = stream;
+            this.iterator = stream.iterator();
+            this.converter = converter;
+            this.input = input;
+            this.remaining = remaining;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
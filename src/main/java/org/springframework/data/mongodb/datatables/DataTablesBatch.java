@@ -0,0 +1,102 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Executes several DataTables queries concurrently (each on its own virtual thread), under a shared time budget, for
+ * example to render all the tables of a dashboard with a single HTTP request.
+ * <p>
+ * Example:
+ * <pre>
+ * List&lt;DataTablesOutput&lt;?&gt;&gt; outputs = DataTablesBatch.withTimeout(Duration.ofSeconds(2))
+ *         .add(usersInput, userRepository::findAll)
+ *         .add(paymentsInput, input -&gt; paymentRepository.findAll(input, null, tenantCriteria))
+ *         .execute();
+ * </pre>
+ * The outputs are returned in the order of the inputs. The queries still running when the time budget is exhausted
+ * are interrupted, and their output only contains the draw counter and an error.
+ *
+ * @see DataTablesRepository#findAll(List, Duration)
+ */
+public final class DataTablesBatch {
+
+    private final Duration timeout;
+    private final List<DataTablesInput> inputs = new ArrayList<>();
+    private final List<Function<DataTablesInput, ? extends DataTablesOutput<?>>> queries = new ArrayList<>();
+
+    private DataTablesBatch(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param timeout the time budget shared by all the queries of the batch
+     */
+    public static DataTablesBatch withTimeout(Duration timeout) {
+        return new DataTablesBatch(timeout);
+    }
+
+    /**
+     * @param input the {@link DataTablesInput} mapped from the request
+     * @param query the query to run for this input, for example {@code userRepository::findAll}
+     */
+    public DataTablesBatch add(DataTablesInput input, Function<DataTablesInput, ? extends DataTablesOutput<?>> query) {
+        inputs.add(input);
+        queries.add(query);
+        return this;
+    }
+
+    public List<DataTablesOutput<?>> execute() {
+        return execute(inputs, queries, timeout);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <O extends DataTablesOutput<?>> List<O> execute(List<DataTablesInput> inputs,
+                                                           List<? extends Function<DataTablesInput, ? extends O>> queries,
+                                                           Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<? extends O>> futures = new ArrayList<>(inputs.size());
+            for (int i = 0; i < inputs.size(); i++) {
+                DataTablesInput input = inputs.get(i);
+                Function<DataTablesInput, ? extends O> query = queries.get(i);
+                futures.add(executor.submit(() -> query.apply(input)));
+            }
+
+            List<O> outputs = new ArrayList<>(inputs.size());
+            for (int i = 0; i < futures.size(); i++) {
+                Future<? extends O> future = futures.get(i);
+                try {
+                    outputs.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    outputs.add((O) error(inputs.get(i), "Timed out after " + timeout.toMillis() + " ms"));
+                } catch (ExecutionException e) {
+                    outputs.add((O) error(inputs.get(i), e.getCause().toString()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    outputs.add((O) error(inputs.get(i), e.toString()));
+                }
+            }
+            return outputs;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static DataTablesOutput<?> error(DataTablesInput input, String error) {
+        DataTablesOutput<?> output = new DataTablesOutput<>();
+        output.setDraw(input.getDraw());
+        output.setError(error);
+        return output;
+    }
+}
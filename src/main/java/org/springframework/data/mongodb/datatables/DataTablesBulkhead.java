@@ -0,0 +1,57 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits the number of {@code findAll} queries executed concurrently against the collection of a
+ * {@link DataTablesRepository}, so that a burst of expensive queries cannot exhaust the connection pool.
+ * <p>
+ * A query waits at most {@link #waitTimeoutMillis()} for a permit, and at most {@link #maxWaiting()} queries may wait
+ * at the same time. Expensive queries (regex searches, skips of at least {@link #largeSkip()} records and
+ * {@code length = -1}) additionally need one of the {@link #maxConcurrentExpensive()} permits. Rejected queries get a
+ * {@link DataTablesOutput} with an error.
+ * <p>
+ * The limits apply to the collection: the repositories of the same collection (in the same database) share them, and
+ * must thus declare the same ones.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;DataTablesBulkhead(maxConcurrent = 10, maxConcurrentExpensive = 2)
+ * public interface UserRepository extends DataTablesRepository&lt;User, String&gt; {}
+ * </pre>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DataTablesBulkhead {
+
+    /**
+     * Maximum number of queries executed concurrently.
+     */
+    int maxConcurrent() default 10;
+
+    /**
+     * Maximum number of expensive queries executed concurrently.
+     */
+    int maxConcurrentExpensive() default 2;
+
+    /**
+     * Maximum number of queries waiting for a permit (the queries getting a permit immediately do not wait).
+     */
+    int maxWaiting() default 20;
+
+    /**
+     * Maximum duration a query may wait for a permit, in milliseconds.
+     */
+    long waitTimeoutMillis() default 1000;
+
+    /**
+     * Minimum number of skipped records (i.e. {@code start}) for a query to be considered expensive.
+     */
+    int largeSkip() default 10_000;
+
+}
@@ -0,0 +1,55 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Applies a {@link org.springframework.data.mongodb.core.query.Collation} to the queries of a
+ * {@link DataTablesRepository} (counts, page and sort), so that they can be served by an index created with the same
+ * collation.
+ * <p>
+ * With a strength of 1 (base characters only) or 2 (base characters and accents), the
+ * {@link DataTablesInput.Search.SearchMode#PREFIX PREFIX} and
+ * {@link DataTablesInput.Search.SearchMode#EXACT_MATCH EXACT_MATCH} searches become case-insensitive (and
+ * accent-insensitive with a strength of 1) while still using the index. The
+ * {@link DataTablesInput.Search.SearchMode#REGEX REGEX} search is deliberately left as is: a regex ignores the
+ * collation, so it stays case-insensitive through its {@code i} option, without using the index.
+ * <p>
+ * A collation applies to a whole query, including the additional and pre-filtering criteria. It is thus only applied
+ * when the input has such a search or an order, and, unless {@link #collateCriteria()} is set, when these criteria do
+ * not compare strings (an equality like {@code where("tenant").is("acme")} would also match {@code "ACME"}). The
+ * {@code recordsTotal} count is run with the same collation as the filtered count.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;DataTablesCollation(locale = "fr", strength = 1)
+ * public interface UserRepository extends DataTablesRepository&lt;User, String&gt; {}
+ * </pre>
+ *
+ * @see <a href="https://www.mongodb.com/docs/manual/reference/collation/">https://www.mongodb.com/docs/manual/reference/collation/</a>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DataTablesCollation {
+
+    /**
+     * The ICU locale, for example "en" or "fr_CA".
+     */
+    String locale();
+
+    /**
+     * The comparison level, from 1 (primary) to 5 (identical).
+     */
+    int strength() default 2;
+
+    /**
+     * Whether the collation is applied even when the additional or pre-filtering criteria compare strings, which then
+     * match with the collation too (case-insensitively with a strength of 1 or 2).
+     */
+    boolean collateCriteria() default false;
+
+}
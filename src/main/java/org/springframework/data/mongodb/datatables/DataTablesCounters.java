@@ -0,0 +1,46 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maintains the number of records of each partition of the collection of a {@link DataTablesRepository} (for example
+ * each tenant), in a side collection, so that {@code recordsTotal} is read from a single document instead of being
+ * counted on each request.
+ * <p>
+ * The counters are used when the pre-filtering criteria are equalities on exactly the declared {@link #fields()}, for
+ * example {@code where("tenantId").is(tenantId)}. They are updated with {@code $inc} by the {@code save},
+ * {@code insert} and {@code delete} methods of the repository, but not by the other ways of writing to the
+ * collection, which is why they are periodically reconciled with the collection if {@link #reconcileIntervalSeconds()}
+ * is set, or can be with {@link DataTablesRepository#reconcileCounters()}.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;DataTablesCounters(fields = "tenantId", reconcileIntervalSeconds = 3600)
+ * public interface PaymentRepository extends DataTablesRepository&lt;Payment, String&gt; {}
+ * </pre>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DataTablesCounters {
+
+    /**
+     * The top-level properties defining a partition.
+     */
+    String[] fields();
+
+    /**
+     * The name of the collection storing the counters, {@code <collection>_counters} by default.
+     */
+    String collection() default "";
+
+    /**
+     * The interval between two reconciliations of the counters, or 0 to disable them.
+     */
+    long reconcileIntervalSeconds() default 0;
+
+}
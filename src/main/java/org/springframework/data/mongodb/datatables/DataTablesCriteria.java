@@ -1,11 +1,16 @@
 package org.springframework.data.mongodb.datatables;
 
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Collation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static java.util.stream.Collectors.toList;
 import static org.springframework.data.domain.Sort.by;
@@ -18,14 +23,39 @@ public final class DataTablesCriteria {
     private final DataTablesInput input;
     private final Collection<Criteria> additionalCriteria;
     private final Collection<Criteria> preFilteringCriteria;
+    private final Collation collation;
+    private final String hint;
+    private final DataTablesSearchIndex searchIndex;
 
     DataTablesCriteria(DataTablesInput input, Collection<Criteria> preFilteringCriteria, Collection<Criteria> additionalCriteria) {
+        this(input, preFilteringCriteria, additionalCriteria, null, null, null);
+    }
+
+    DataTablesCriteria(DataTablesInput input, Collection<Criteria> preFilteringCriteria, Collection<Criteria> additionalCriteria,
+                       Collation collation, Collection<DataTablesHint> hints, DataTablesSearchIndex searchIndex) {
         this.input = input;
         this.additionalCriteria = additionalCriteria;
         this.preFilteringCriteria = preFilteringCriteria;
+        this.collation = collation != null && isCollationSensitive(input) ? collation : null;
+        this.hint = selectHint(input, hints);
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Returns the index hint applied to the queries, or {@code null} if none.
+     */
+    String getHint() {
+        return hint;
     }
 
     Query toQuery() {
+        Query query = this.toSortedQuery();
+        query.skip(input.getStart());
+        query.limit(input.getLength());
+        return query;
+    }
+
+    Query toSortedQuery() {
         Query query = this.toCountQuery();
         addSort(query, input);
         return query;
@@ -36,6 +66,12 @@ public final class DataTablesCriteria {
 
         addGlobalCriteria(query, input);
         input.getColumns().forEach(column -> this.addColumnCriteria(query, column));
+        if (collation != null) {
+            query.collation(collation);
+        }
+        if (hint != null) {
+            query.withHint(hint);
+        }
 
         if (additionalCriteria != null) {
             for (Criteria criteria : additionalCriteria) {
@@ -56,16 +92,51 @@ public final class DataTablesCriteria {
     }
 
     public static Criteria[] getGlobalCriteria(DataTablesInput input) {
+        return getGlobalCriteria(input, false);
+    }
+
+    /**
+     * @param collated whether the query will be run with a {@link Collation}, in which case the prefix search is
+     *                 expressed as a range (which honors the collation) instead of a regex (which does not)
+     */
+    public static Criteria[] getGlobalCriteria(DataTablesInput input, boolean collated) {
         if (!hasText(input.getSearch().getValue())) return new Criteria[]{};
 
         return input.getColumns().stream()
                 .filter(DataTablesInput.Column::isSearchable)
-                .map(column -> createCriteria(column, input.getSearch()))
+                .map(column -> createCriteria(column, input.getSearch(), collated))
                 .toArray(Criteria[]::new);
     }
 
+    /**
+     * @param searchIndex the {@link DataTablesSearchIndex} of the entity, if any and if its tokens are maintained, in
+     *                    which case a {@link DataTablesInput.Search.SearchMode#PREFIX PREFIX} search over indexed
+     *                    columns (all the searchable ones, and at least one) is expressed as a single {@code $all}
+     *                    query on the tokens, matching the searched words anywhere in the columns
+     */
+    public static Criteria[] getGlobalCriteria(DataTablesInput input, boolean collated, DataTablesSearchIndex searchIndex) {
+        if (searchIndex == null || !hasText(input.getSearch().getValue())
+                || input.getSearch().getSearchMode() != DataTablesInput.Search.SearchMode.PREFIX) {
+            return getGlobalCriteria(input, collated);
+        }
+
+        // without any searchable column, the global search is ignored like without the index
+        List<String> indexedColumns = Arrays.asList(searchIndex.columns());
+        List<DataTablesInput.Column> searchableColumns = input.getColumns().stream()
+                .filter(DataTablesInput.Column::isSearchable)
+                .collect(toList());
+        boolean indexed = !searchableColumns.isEmpty()
+                && searchableColumns.stream().allMatch(column -> indexedColumns.contains(column.getData()));
+        List<String> tokens = SearchTokens.ofSearch(input.getSearch().getValue(), searchIndex.gramLength());
+        if (!indexed || tokens.isEmpty()) {
+            return getGlobalCriteria(input, collated);
+        }
+
+        return new Criteria[]{where(searchIndex.field()).all(tokens)};
+    }
+
     private void addGlobalCriteria(Query query, DataTablesInput input) {
-        Criteria[] criteriaArray = getGlobalCriteria(input);
+        Criteria[] criteriaArray = getGlobalCriteria(input, collation != null, searchIndex);
 
         if (criteriaArray.length == 1) {
             query.addCriteria(criteriaArray[0]);
@@ -75,44 +146,119 @@ public final class DataTablesCriteria {
     }
 
     public static Criteria getColumnCriteria(DataTablesInput.Column column) {
+        return getColumnCriteria(column, false);
+    }
+
+    /**
+     * @param collated whether the query will be run with a {@link Collation}, see {@link #getGlobalCriteria(DataTablesInput, boolean)}
+     */
+    public static Criteria getColumnCriteria(DataTablesInput.Column column, boolean collated) {
         if ((column.isSearchable() || column.isSearchableIndependently()) && hasText(column.getSearch().getValue())) {
-            return createColumnCriteria(column);
+            return createColumnCriteria(column, collated);
         }
         return null;
     }
 
     private void addColumnCriteria(Query query, DataTablesInput.Column column) {
-        Criteria columnCriteria = getColumnCriteria(column);
+        Criteria columnCriteria = getColumnCriteria(column, collation != null);
         if (columnCriteria != null) {
             query.addCriteria(columnCriteria);
         }
     }
 
-    private static Criteria createColumnCriteria(DataTablesInput.Column column) {
+    private static Criteria createColumnCriteria(DataTablesInput.Column column, boolean collated) {
         String searchValue = column.getSearch().getValue();
         if ("true".equalsIgnoreCase(searchValue) || "false".equalsIgnoreCase(searchValue)) {
             return where(column.getData()).is(Boolean.valueOf(searchValue));
         } else {
-            return createCriteria(column, column.getSearch());
+            return createCriteria(column, column.getSearch(), collated);
         }
     }
 
-    private static Criteria createCriteria(DataTablesInput.Column column, DataTablesInput.Search search) {
+    private static Criteria createCriteria(DataTablesInput.Column column, DataTablesInput.Search search, boolean collated) {
         String searchValue = search.getValue();
         switch (search.getSearchMode()) {
           case REGEX:
+            // deliberately left without the collation, which a regex ignores: case-insensitive, but not index-backed
             return where(column.getData()).regex(searchValue, "i");
           case EXACT_MATCH:
             return where(column.getData()).is(searchValue);
           default:
+            if (collated) {
+                // U+FFFF has the highest primary weight, so the range contains every string starting with the value
+                String prefix = searchValue.trim();
+                return where(column.getData()).gte(prefix).lt(prefix + '\uFFFF');   // can use collation-matching index!
+            }
             return where(column.getData()).regex("^" + searchValue.trim());   // can use index!
         }
     }
 
-    private void addSort(Query query, DataTablesInput input) {
-        query.skip(input.getStart());
-        query.limit(input.getLength());
+    /**
+     * Returns whether the given criteria compare a field with a string (other than with a regex, which ignores the
+     * collation), and would thus be widened by a case- or accent-insensitive collation.
+     */
+    static boolean comparesStrings(Collection<Criteria> criteria) {
+        return criteria != null && criteria.stream().anyMatch(c -> c != null && comparesStrings(c.getCriteriaObject()));
+    }
+
+    private static boolean comparesStrings(Object value) {
+        if (value instanceof String) {
+            return true;
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).entrySet().stream()
+                    .anyMatch(entry -> !"$regex".equals(entry.getKey()) && !"$options".equals(entry.getKey()) && comparesStrings(entry.getValue()));
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).stream().anyMatch(DataTablesCriteria::comparesStrings);
+        }
+        return false;
+    }
 
+    /**
+     * Returns whether the result of the given input depends on the collation: a
+     * {@link DataTablesInput.Search.SearchMode#PREFIX PREFIX} or
+     * {@link DataTablesInput.Search.SearchMode#EXACT_MATCH EXACT_MATCH} search, or an order. Since a collation applies to
+     * the whole query, including the additional and pre-filtering criteria, it is left out of the other queries.
+     */
+    private static boolean isCollationSensitive(DataTablesInput input) {
+        if (hasText(input.getSearch().getValue()) && input.getSearch().getSearchMode() != DataTablesInput.Search.SearchMode.REGEX
+                && input.getColumns().stream().anyMatch(DataTablesInput.Column::isSearchable)) {
+            return true;
+        }
+        for (DataTablesInput.Column column : input.getColumns()) {
+            if (getColumnCriteria(column) != null && column.getSearch().getSearchMode() != DataTablesInput.Search.SearchMode.REGEX) {
+                return true;
+            }
+        }
+        return !isEmpty(input.getOrder()) && input.getOrder().stream().anyMatch(order -> isOrderable(input, order));
+    }
+
+    private static String selectHint(DataTablesInput input, Collection<DataTablesHint> hints) {
+        if (hints == null || hints.isEmpty()) return null;
+
+        Set<String> columns = new HashSet<>();
+        for (DataTablesInput.Column column : input.getColumns()) {
+            if (getColumnCriteria(column) != null) {
+                columns.add(column.getData());
+            }
+        }
+        if (!isEmpty(input.getOrder())) {
+            for (DataTablesInput.Order order : input.getOrder()) {
+                if (isOrderable(input, order)) {
+                    columns.add(input.getColumns().get(order.getColumn()).getData());
+                }
+            }
+        }
+
+        return hints.stream()
+                .filter(hint -> columns.containsAll(Arrays.asList(hint.columns())))
+                .map(DataTablesHint::index)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private void addSort(Query query, DataTablesInput input) {
         if (isEmpty(input.getOrder())) return;
 
         List<Sort.Order> orders = input.getOrder().stream()
@@ -121,7 +267,7 @@ public final class DataTablesCriteria {
         query.with(by(orders));
     }
 
-    private boolean isOrderable(DataTablesInput input, DataTablesInput.Order order) {
+    private static boolean isOrderable(DataTablesInput input, DataTablesInput.Order order) {
         boolean isWithinBounds = order.getColumn() < input.getColumns().size();
         return isWithinBounds && input.getColumns().get(order.getColumn()).isOrderable();
     }
@@ -0,0 +1,51 @@
+package org.springframework.data.mongodb.datatables;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A change of a record relevant to a page of a DataTable, as notified by a
+ * {@link DataTablesRepository#subscribe(DataTablesInput, java.util.function.Consumer) subscription}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public final class DataTablesDelta<T> {
+
+    /**
+     * The kind of change.
+     */
+    private Type type;
+
+    /**
+     * The {@code _id} of the record. Not included for {@link Type#RESET}.
+     */
+    private Object id;
+
+    /**
+     * The record, as of the change. Not included for {@link Type#REMOVED} and {@link Type#RESET}.
+     */
+    private T row;
+
+    public enum Type {
+        /**
+         * A record matching the filter was inserted. Its position in the table depends on the order, so the table
+         * should usually be redrawn.
+         */
+        INSERTED,
+        /**
+         * A record matching the filter was updated.
+         */
+        UPDATED,
+        /**
+         * A record of the page was deleted, or does not match the filter anymore.
+         */
+        REMOVED,
+        /**
+         * Changes may have been missed, since the change stream could not be resumed after a failure: the table should
+         * be redrawn (with a new subscription, this one being closed). Without {@code id} nor {@code row}.
+         */
+        RESET
+    }
+}
@@ -0,0 +1,41 @@
+package org.springframework.data.mongodb.datatables;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A group of records sharing the same value of the group-by column, see
+ * {@link DataTablesRepository#findAllGrouped(DataTablesInput, String)}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public final class DataTablesGroup<T> {
+
+    /**
+     * The value of the group-by column.
+     */
+    private Object value;
+
+    /**
+     * The number of filtered records in the group.
+     */
+    private long count;
+
+    /**
+     * The values of the aggregates requested in {@link DataTablesInput#getAggregates()}, computed over the filtered
+     * records of the group, indexed by column data then by operator. Not included if no aggregate was requested.
+     */
+    private Map<String, Map<String, Object>> aggregates;
+
+    /**
+     * The filtered records of the group, in the requested order, up to 1000 records: {@link #count} tells whether some
+     * are missing.
+     */
+    private List<T> rows;
+
+}
@@ -0,0 +1,47 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Forces the index used by the queries of a {@link DataTablesRepository}: the filtered count and the page query both
+ * get the same hint, so that they cannot end up with different plans. The pre-filtering count, whose shape is
+ * different, is left to the query planner.
+ * <p>
+ * Several hints can be declared, the first one whose {@link #columns()} are all either searched (with a column
+ * search) or sorted being applied. A hint without columns always matches, and thus serves as a default.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;DataTablesHint(index = "status_1_createdAt_-1", columns = "status")
+ * &#64;DataTablesHint(index = "{ createdAt: -1 }")
+ * public interface PaymentRepository extends DataTablesRepository&lt;Payment, String&gt; {}
+ * </pre>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(DataTablesHint.List.class)
+public @interface DataTablesHint {
+
+    /**
+     * The name of the index, or its key pattern as a JSON document.
+     */
+    String index();
+
+    /**
+     * The data of the columns which must be searched or sorted for this hint to be applied.
+     */
+    String[] columns() default {};
+
+    @Documented
+    @Target(ElementType.TYPE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface List {
+        DataTablesHint[] value();
+    }
+}
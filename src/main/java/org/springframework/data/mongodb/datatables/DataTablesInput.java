@@ -64,6 +64,51 @@ public class DataTablesInput {
      */
     private boolean countingRecordsDisabled = false;
 
+    /**
+     * If true, the page is returned without waiting for {@link DataTablesOutput#getRecordsTotal()} and
+     * {@link DataTablesOutput#getRecordsFiltered()}, which are computed in the background and retrieved with the
+     * {@link DataTablesOutput#getCountToken()}. Ignored if {@link #countingRecordsDisabled} is set.
+     */
+    private boolean countingRecordsDeferred = false;
+
+    /**
+     * If true, each row of {@link DataTablesOutput#getData()} is serialized as an array of the values of the
+     * {@link #columns}, in order, instead of an object. The client-side columns should then be declared without
+     * {@code data}, or with their index as {@code data}.
+     */
+    private boolean arrayRows = false;
+
+    /**
+     * Columns for which the distinct values and their number of occurrences (under the current filter) should be
+     * returned in {@link DataTablesOutput#getFacets()}
+     */
+    private List<Facet> facets;
+
+    /**
+     * Aggregates (for example the sum of an amount column) to compute over the filtered records, returned in
+     * {@link DataTablesOutput#getAggregates()}
+     */
+    private List<Aggregate> aggregates;
+
+    /**
+     * Returns a copy of this input for the given page. The search, order and columns are shared with this input.
+     */
+    DataTablesInput withPaging(int start, int length) {
+        DataTablesInput input = new DataTablesInput();
+        input.setDraw(draw);
+        input.setStart(start);
+        input.setLength(length);
+        input.setSearch(search);
+        input.setOrder(order);
+        input.setColumns(columns);
+        input.setCountingRecordsDisabled(countingRecordsDisabled);
+        input.setCountingRecordsDeferred(countingRecordsDeferred);
+        input.setArrayRows(arrayRows);
+        input.setFacets(facets);
+        input.setAggregates(aggregates);
+        return input;
+    }
+
     public Optional<Column> getColumn(String columnName) {
         return this.columns.stream()
                 .filter(column -> columnName.equals(column.getData()))
@@ -154,6 +199,58 @@ public class DataTablesInput {
         }
     }
 
+    @Data
+    public static final class Facet {
+
+        /**
+         * Column for which the facet should be computed. This is an index reference to the columns array of
+         * information that is also submitted to the server.
+         */
+        @Min(0)
+        private int column;
+
+        /**
+         * Maximum number of values to return, the most frequent first.
+         */
+        @Min(1)
+        private int limit = 10;
+
+        public Facet(@Min(0) int column, @Min(1) int limit) {
+            this.column = column;
+            this.limit = limit;
+        }
+
+        Facet() {}
+    }
+
+    @Data
+    public static final class Aggregate {
+
+        /**
+         * Column to aggregate. This is an index reference to the columns array of information that is also submitted
+         * to the server.
+         */
+        @Min(0)
+        private int column;
+
+        /**
+         * Aggregation operator to apply to the values of this column.
+         */
+        @NotNull
+        private Operator operator;
+
+        public Aggregate(@Min(0) int column, @NotNull Operator operator) {
+            this.column = column;
+            this.operator = operator;
+        }
+
+        Aggregate() {}
+
+        public enum Operator {
+            sum, avg, min, max
+        }
+    }
+
     @Data
     public static final class Order {
 
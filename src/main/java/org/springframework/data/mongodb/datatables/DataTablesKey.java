@@ -0,0 +1,94 @@
+package org.springframework.data.mongodb.datatables;
+
+import lombok.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+
+/**
+ * Normalized shape and values of a DataTables request: every parameter of the {@link DataTablesInput} except its draw
+ * counter, along with the additional and pre-filtering criteria.
+ */
+@Value
+class DataTablesKey {
+
+    List<Object> input;
+    List<Object> additionalCriteria;
+    List<Object> preFilteringCriteria;
+
+    static DataTablesKey of(DataTablesInput input, Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria) {
+        return new DataTablesKey(normalize(input), normalize(additionalCriteria), normalize(preFilteringCriteria));
+    }
+
+    private static List<Object> normalize(DataTablesInput input) {
+        List<Object> key = new ArrayList<>();
+        key.add(input.getStart());
+        key.add(input.getLength());
+        key.add(input.isCountingRecordsDisabled());
+        key.add(input.isCountingRecordsDeferred());
+        key.add(input.isArrayRows());
+        key.add(normalize(input.getSearch()));
+        if (input.getOrder() != null) {
+            for (DataTablesInput.Order order : input.getOrder()) {
+                key.add(asList(order.getColumn(), order.getDir()));
+            }
+        }
+        if (input.getFacets() != null) {
+            for (DataTablesInput.Facet facet : input.getFacets()) {
+                key.add(asList(facet.getColumn(), facet.getLimit()));
+            }
+        }
+        if (input.getAggregates() != null) {
+            for (DataTablesInput.Aggregate aggregate : input.getAggregates()) {
+                key.add(asList(aggregate.getColumn(), aggregate.getOperator()));
+            }
+        }
+        for (DataTablesInput.Column column : input.getColumns()) {
+            key.add(asList(column.getData(), column.isSearchable(), column.isSearchableIndependently(),
+                    column.isOrderable(), normalize(column.getSearch())));
+        }
+        return key;
+    }
+
+    private static List<Object> normalize(DataTablesInput.Search search) {
+        return search == null ? emptyList() : asList(search.getValue(), search.getSearchMode());
+    }
+
+    private static List<Object> normalize(Collection<Criteria> criteria) {
+        List<Object> key = new ArrayList<>();
+        if (criteria != null) {
+            for (Criteria criterion : criteria) {
+                if (criterion != null) {
+                    key.add(normalize(criterion.getCriteriaObject()));
+                }
+            }
+        }
+        return key;
+    }
+
+    /**
+     * {@link Pattern} does not implement {@link Object#equals(Object)}, so it is replaced by its source and flags.
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Map) {
+            Map<Object, Object> map = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((k, v) -> map.put(k, normalize(v)));
+            return map;
+        } else if (value instanceof Collection) {
+            List<Object> list = new ArrayList<>();
+            ((Collection<?>) value).forEach(element -> list.add(normalize(element)));
+            return list;
+        } else if (value instanceof Pattern) {
+            return asList(((Pattern) value).pattern(), ((Pattern) value).flags());
+        }
+        return value;
+    }
+}
@@ -0,0 +1,48 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caps the number of records returned at once by the {@code findAll} methods of a {@link DataTablesRepository}.
+ * <p>
+ * A request with a larger {@code length} (or {@code length = -1}, "all records") gets the first {@link #value()}
+ * records, along with a {@link DataTablesOutput#getNextChunkToken()}. All the records of the page, the first chunk
+ * included, are read from a single server-side cursor, kept open for {@link #cursorTimeToLiveSeconds()} after each
+ * chunk, and the following ones are retrieved chunk by chunk with {@link DataTablesRepository#findNextChunk(String)},
+ * so that the memory used by a request stays bounded. Such pages are not cached.
+ * <p>
+ * The same applies to the pages of a base aggregation, read from a single aggregation cursor, and to the pages of
+ * groups of {@code findAllGrouped}, delivered in chunks of groups.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;DataTablesMaxLength(1000)
+ * public interface UserRepository extends DataTablesRepository&lt;User, String&gt; {}
+ * </pre>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DataTablesMaxLength {
+
+    /**
+     * Maximum number of records per response, and thus size of the chunks.
+     */
+    int value() default 1000;
+
+    /**
+     * Time after which a cursor which is not read anymore is closed.
+     */
+    long cursorTimeToLiveSeconds() default 30;
+
+    /**
+     * Maximum number of cursors open at the same time. Above it, the responses are truncated to {@link #value()}
+     * records.
+     */
+    int maxOpenCursors() default 100;
+
+}
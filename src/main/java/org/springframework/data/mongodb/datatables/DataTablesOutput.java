@@ -1,15 +1,30 @@
 package org.springframework.data.mongodb.datatables;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Output of the {@code findAll} methods of a {@link DataTablesRepository}.
+ * <p>
+ * The {@code null} attributes are omitted, and all the attributes belong to the {@link View} view. It is serialized by
+ * {@link DataTablesOutputSerializer} with Jackson 2, and by {@link DataTablesOutputJackson3Serializer} with Jackson 3,
+ * which also write the rows as arrays if requested; other mappers fall back on the annotations of the fields, and
+ * always write the rows as objects.
+ */
 @Data
 @JsonInclude(value = Include.NON_NULL)
+@JsonSerialize(using = DataTablesOutputSerializer.class)
+@tools.jackson.databind.annotation.JsonSerialize(using = DataTablesOutputJackson3Serializer.class)
 public final class DataTablesOutput<T> {
 
     /**
@@ -48,10 +63,56 @@ public final class DataTablesOutput<T> {
      * The data to be displayed in the table. This is an array of data source objects, one for each
      * row, which will be used by DataTables. Note that this parameter's name can be changed using the
      * ajaxDT option's dataSrc property.
+     * <p>
+     * If {@link #columns} is set, each row is serialized as an array of the values of the columns, in order.
      */
     @JsonView(View.class)
     private List<T> data = Collections.emptyList();
 
+    /**
+     * The data of the columns, in order, if the rows should be serialized as arrays (see
+     * {@link DataTablesInput#isArrayRows()}). Not serialized as such, the client already knows them.
+     */
+    @JsonIgnore
+    private List<String> columns;
+
+    /**
+     * The most frequent values of the columns requested in {@link DataTablesInput#getFacets()}, under the current
+     * filter, indexed by column data. Not included if no facet was requested.
+     */
+    @JsonView(View.class)
+    private Map<String, List<FacetBucket>> facets;
+
+    /**
+     * The values of the aggregates requested in {@link DataTablesInput#getAggregates()}, computed over the filtered
+     * records, indexed by column data then by operator, for example {@code {"amount": {"sum": 1234.5}}}. Not
+     * included if no aggregate was requested.
+     */
+    @JsonView(View.class)
+    private Map<String, Map<String, Object>> aggregates;
+
+    /**
+     * The token of the counts being computed in the background, if {@link DataTablesInput#isCountingRecordsDeferred()}
+     * is set, see {@link DataTablesRepository#findCounts(String, java.time.Duration)}.
+     */
+    @JsonView(View.class)
+    private String countToken;
+
+    /**
+     * The token of the cursor holding the next records of the page, if it exceeds the {@link DataTablesMaxLength} of
+     * the repository, see {@link DataTablesRepository#findNextChunk(String)}. {@link #hasNext} is only known with the
+     * last chunk.
+     */
+    @JsonView(View.class)
+    private String nextChunkToken;
+
+    /**
+     * What the {@link DataTablesPlanGuard} did, if the plan of the query contains a blocking sort or a collection
+     * scan. Not included otherwise.
+     */
+    @JsonView(View.class)
+    private String warning;
+
     /**
      * Optional: If an error occurs during the running of the server-side processing script, you can
      * inform the user of this error by passing back the error message to be displayed using this
@@ -63,4 +124,23 @@ public final class DataTablesOutput<T> {
     public interface View {
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static final class FacetBucket {
+
+        /**
+         * A distinct value of the column (or of one of its elements, for an array).
+         */
+        @JsonView(View.class)
+        private Object value;
+
+        /**
+         * The number of filtered records with this value.
+         */
+        @JsonView(View.class)
+        private long count;
+
+    }
+
 }
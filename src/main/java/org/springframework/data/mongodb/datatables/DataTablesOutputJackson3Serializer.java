@@ -0,0 +1,58 @@
+package org.springframework.data.mongodb.datatables;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.SerializationContext;
+import tools.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Jackson 3 version of {@link DataTablesOutputSerializer}, producing the same output. Jackson 3 ignores the
+ * {@code com.fasterxml} {@code @JsonSerialize} annotation, so {@link DataTablesOutput} is annotated with both.
+ */
+final class DataTablesOutputJackson3Serializer extends StdSerializer<DataTablesOutput<?>> {
+
+    @SuppressWarnings("unchecked")
+    DataTablesOutputJackson3Serializer() {
+        super((Class<DataTablesOutput<?>>) (Class<?>) DataTablesOutput.class);
+    }
+
+    @Override
+    public void serialize(DataTablesOutput<?> output, JsonGenerator gen, SerializationContext context) {
+        gen.writeStartObject(output);
+
+        Class<?> view = context.getActiveView();
+        if (view == null || DataTablesOutput.View.class.isAssignableFrom(view)) {
+            gen.writeNumberProperty("draw", output.getDraw());
+            if (output.getRecordsTotal() != null) {
+                gen.writeNumberProperty("recordsTotal", output.getRecordsTotal());
+            }
+            if (output.getRecordsFiltered() != null) {
+                gen.writeNumberProperty("recordsFiltered", output.getRecordsFiltered());
+            }
+            gen.writeBooleanProperty("hasNext", output.getHasNext());
+            if (output.getData() != null) {
+                gen.writeName("data");
+                new ArrayRowsJackson3Writer(gen, context).writeRows(output.getData(), output.getColumns());
+            }
+            if (output.getFacets() != null) {
+                context.defaultSerializeProperty("facets", output.getFacets(), gen);
+            }
+            if (output.getAggregates() != null) {
+                context.defaultSerializeProperty("aggregates", output.getAggregates(), gen);
+            }
+            if (output.getCountToken() != null) {
+                gen.writeStringProperty("countToken", output.getCountToken());
+            }
+            if (output.getNextChunkToken() != null) {
+                gen.writeStringProperty("nextChunkToken", output.getNextChunkToken());
+            }
+            if (output.getWarning() != null) {
+                gen.writeStringProperty("warning", output.getWarning());
+            }
+            if (output.getError() != null) {
+                gen.writeStringProperty("error", output.getError());
+            }
+        }
+
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,67 @@
+package org.springframework.data.mongodb.datatables;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Serializer of {@link DataTablesOutput}, writing its attributes directly instead of going through the generic bean
+ * serialization, and the rows with a {@link RowsWriter}. The rows are loaded before the output is returned (the cursor
+ * is closed by then): they are written one after the other, without an intermediate tree, but not read from the
+ * cursor while being written.
+ * <p>
+ * It produces the same output as the annotations of the fields of {@link DataTablesOutput}, except for the rows
+ * written as arrays: the {@code null} attributes are omitted, and all the attributes belong to the
+ * {@link DataTablesOutput.View} view, so that an active view which does not extend it hides them all. The rows are
+ * serialized with the active view.
+ */
+final class DataTablesOutputSerializer extends StdSerializer<DataTablesOutput<?>> {
+
+    @SuppressWarnings("unchecked")
+    DataTablesOutputSerializer() {
+        super((Class<DataTablesOutput<?>>) (Class<?>) DataTablesOutput.class);
+    }
+
+    @Override
+    public void serialize(DataTablesOutput<?> output, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(output);
+
+        Class<?> view = provider.getActiveView();
+        if (view == null || DataTablesOutput.View.class.isAssignableFrom(view)) {
+            gen.writeNumberField("draw", output.getDraw());
+            if (output.getRecordsTotal() != null) {
+                gen.writeNumberField("recordsTotal", output.getRecordsTotal());
+            }
+            if (output.getRecordsFiltered() != null) {
+                gen.writeNumberField("recordsFiltered", output.getRecordsFiltered());
+            }
+            gen.writeBooleanField("hasNext", output.getHasNext());
+            if (output.getData() != null) {
+                gen.writeFieldName("data");
+                new ArrayRowsWriter(gen, provider).writeRows(output.getData(), output.getColumns());
+            }
+            if (output.getFacets() != null) {
+                provider.defaultSerializeField("facets", output.getFacets(), gen);
+            }
+            if (output.getAggregates() != null) {
+                provider.defaultSerializeField("aggregates", output.getAggregates(), gen);
+            }
+            if (output.getCountToken() != null) {
+                gen.writeStringField("countToken", output.getCountToken());
+            }
+            if (output.getNextChunkToken() != null) {
+                gen.writeStringField("nextChunkToken", output.getNextChunkToken());
+            }
+            if (output.getWarning() != null) {
+                gen.writeStringField("warning", output.getWarning());
+            }
+            if (output.getError() != null) {
+                gen.writeStringField("error", output.getError());
+            }
+        }
+
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,45 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the pages returned by the {@code findAll} methods of a {@link DataTablesRepository}, keyed by the
+ * {@link DataTablesInput} (except its draw counter) and the additional and pre-filtering criteria.
+ * <p>
+ * The data and the counts are cached, the records as BSON documents: each hit reads its own instances of the records
+ * (so that a caller may modify them), then applies the converter (if any). The cache is bounded by the
+ * total number of cached rows, the least recently used pages being evicted first. It can be cleared with
+ * {@link DataTablesRepository#evictPageCache()}, or on every change of the collection with {@link #evictOnChange()}.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;DataTablesPageCache(maximumWeight = 5000, timeToLiveSeconds = 30)
+ * public interface UserRepository extends DataTablesRepository&lt;User, String&gt; {}
+ * </pre>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DataTablesPageCache {
+
+    /**
+     * Maximum number of rows kept in the cache, all pages included.
+     */
+    long maximumWeight() default 10_000;
+
+    /**
+     * Duration after which a cached page expires, in seconds.
+     */
+    long timeToLiveSeconds() default 60;
+
+    /**
+     * If {@code true}, the cache is cleared on every change of the collection, as notified by a change stream (which
+     * requires a replica set or a sharded cluster). The change stream is resumed after a failure.
+     */
+    boolean evictOnChange() default false;
+
+}
@@ -0,0 +1,73 @@
+package org.springframework.data.mongodb.datatables;
+
+import org.springframework.data.domain.Sort;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Inspects the plan of the page queries of a {@link DataTablesRepository}, and acts on the ones requiring a blocking
+ * in-memory sort (a {@code SORT} stage, which fails once it exceeds the memory limit of the server) or a full
+ * collection scan (a {@code COLLSCAN} stage).
+ * <p>
+ * The plan is explained once per query shape (the filter without its values, the sort, the collation and the hint),
+ * and then cached. What was done is logged when the shape is explained, and reported in
+ * {@link DataTablesOutput#getWarning()} for each request.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;DataTablesPlanGuard(onInMemorySort = DataTablesPlanGuard.Action.DEFAULT_ORDER, defaultOrder = "createdAt")
+ * public interface UserRepository extends DataTablesRepository&lt;User, String&gt; {}
+ * </pre>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DataTablesPlanGuard {
+
+    /**
+     * What to do when the plan of a query contains a blocking sort.
+     */
+    Action onInMemorySort() default Action.REJECT;
+
+    /**
+     * Whether the queries scanning the whole collection should be rejected. Note that, without any filter, the
+     * queries which are not sorted by an indexed field always scan the collection.
+     */
+    boolean rejectCollectionScans() default false;
+
+    /**
+     * The property the queries are sorted by with {@link Action#DEFAULT_ORDER}, which should be indexed.
+     */
+    String defaultOrder() default "id";
+
+    /**
+     * The direction of the {@link #defaultOrder()}.
+     */
+    Sort.Direction defaultDirection() default Sort.Direction.ASC;
+
+    /**
+     * Maximum number of query shapes whose plan is cached.
+     */
+    int maximumShapes() default 1000;
+
+    enum Action {
+        /**
+         * The request gets a {@link DataTablesOutput} with an error.
+         */
+        REJECT,
+        /**
+         * The requested order is replaced by the {@link #defaultOrder()}.
+         */
+        DEFAULT_ORDER,
+        /**
+         * The query is executed as is, but may write temporary files on the server if the sort exceeds its memory
+         * limit.
+         */
+        ALLOW_DISK_USE
+    }
+
+}
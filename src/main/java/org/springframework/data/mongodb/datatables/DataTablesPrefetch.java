@@ -0,0 +1,46 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Prefetches the next page of each page returned by the {@code findAll} methods of a {@link DataTablesRepository},
+ * so that the "Next" button can be answered from memory.
+ * <p>
+ * The next page is fetched asynchronously, without counting (the counts of the current page are reused), and kept
+ * for a short time in a buffer keyed by the same parameters as the {@link DataTablesPageCache}, which include the
+ * additional and pre-filtering criteria (and thus any user- or tenant-specific filter). Prefetched pages are consumed
+ * on first use. The hits and misses (the prefetched pages which were requested before being fetched, or after a
+ * failure) are available with {@link DataTablesRepository#getPrefetchStats()}.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;DataTablesPrefetch(timeToLiveSeconds = 10)
+ * public interface UserRepository extends DataTablesRepository&lt;User, String&gt; {}
+ * </pre>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DataTablesPrefetch {
+
+    /**
+     * Maximum number of rows kept in the buffer, all prefetched pages included.
+     */
+    long maximumWeight() default 10_000;
+
+    /**
+     * Duration after which a prefetched page is discarded, in seconds.
+     */
+    long timeToLiveSeconds() default 10;
+
+    /**
+     * If {@code true}, the buffer is cleared on every change of the collection, like the page cache with
+     * {@link DataTablesPageCache#evictOnChange()}. Each of these flags clears both.
+     */
+    boolean evictOnChange() default false;
+
+}
@@ -0,0 +1,31 @@
+package org.springframework.data.mongodb.datatables;
+
+import lombok.Value;
+
+/**
+ * Statistics of the {@link DataTablesPrefetch prefetching} of a {@link DataTablesRepository}.
+ */
+@Value
+public class DataTablesPrefetchStats {
+
+    /**
+     * Number of pages served from the prefetch buffer.
+     */
+    long hits;
+
+    /**
+     * Number of prefetched pages that were not available yet in the prefetch buffer (still being fetched, or failed),
+     * and thus had to be queried. The pages which were not prefetched are not counted.
+     */
+    long misses;
+
+    /**
+     * Number of pages fetched into the prefetch buffer, whether they were then requested or not.
+     */
+    long fetched;
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,46 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Routes the queries of a {@link DataTablesRepository} to the given read preferences, instead of the one the
+ * {@link org.springframework.data.mongodb.core.MongoTemplate} was built with.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;DataTablesReadPreference(count = "secondaryPreferred", page = "nearest", maxStalenessSeconds = 120)
+ * public interface UserRepository extends DataTablesRepository&lt;User, String&gt; {}
+ * </pre>
+ *
+ * @see com.mongodb.ReadPreference#valueOf(String)
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DataTablesReadPreference {
+
+    /**
+     * Read preference of both the count and the page queries, unless overridden by {@link #count()} or {@link #page()}.
+     */
+    String value() default "";
+
+    /**
+     * Read preference of the {@code recordsTotal} and {@code recordsFiltered} counts.
+     */
+    String count() default "";
+
+    /**
+     * Read preference of the query returning the data of the page, and of the exports.
+     */
+    String page() default "";
+
+    /**
+     * Maximum replication lag of the selected secondaries, in seconds (at least 90). Ignored if negative.
+     */
+    long maxStalenessSeconds() default -1;
+
+}
@@ -1,11 +1,15 @@
 package org.springframework.data.mongodb.datatables;
 
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.repository.NoRepositoryBean;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 @NoRepositoryBean
@@ -62,4 +66,217 @@ public interface DataTablesRepository<T, ID extends Serializable> extends MongoR
     <R> DataTablesOutput<R> findAll(DataTablesInput input, Criteria additionalCriteria,
                                     Criteria preFilteringCriteria, Function<T, R> converter);
 
+    /**
+     * Returns the filtered groups of records sharing the same value of the given column, for the given
+     * {@link DataTablesInput}. The paging parameters, and the counts, apply to the groups rather than to the records,
+     * so that a group is never split across pages.
+     * <p>
+     * The groups are sorted by value, in the direction of the order of the group-by column if it is requested. The
+     * records of each group (at most 1000) are returned in the requested order, with the aggregates of the input
+     * computed per group. The groups are formed, counted and assigned their records with the {@link DataTablesCollation}
+     * of the repository if any, and an array value forms its own group.
+     *
+     * @param input   the {@link DataTablesInput} mapped from the Ajax request
+     * @param groupBy the data of the group-by column, which should be indexed
+     * @return a {@link DataTablesOutput} of {@link DataTablesGroup}
+     */
+    DataTablesOutput<DataTablesGroup<T>> findAllGrouped(DataTablesInput input, String groupBy);
+
+    /**
+     * Returns the filtered groups of records sharing the same value of the given column, for the given
+     * {@link DataTablesInput}, see {@link #findAllGrouped(DataTablesInput, String)}.
+     *
+     * @param input                the {@link DataTablesInput} mapped from the Ajax request
+     * @param additionalCriteria   additional {@link Criteria} to apply to the query (with an "AND" clause)
+     * @param preFilteringCriteria pre-filtering {@link Criteria} to apply to the query (with an "AND" clause)
+     * @param groupBy              the data of the group-by column, which should be indexed
+     * @return a {@link DataTablesOutput} of {@link DataTablesGroup}
+     */
+    DataTablesOutput<DataTablesGroup<T>> findAllGrouped(DataTablesInput input, Collection<Criteria> additionalCriteria,
+                                                       Collection<Criteria> preFilteringCriteria, String groupBy);
+
+    /**
+     * Returns the filtered list for the given {@link DataTablesInput}, over the documents produced by the given
+     * aggregation (for example with {@code $unwind}, {@code $lookup} or {@code $unionWith} stages) instead of the
+     * documents of the collection. The columns thus refer to the fields of the produced documents.
+     * <p>
+     * The filters are moved before the stages which do not modify the fields they reference, so that they can use the
+     * indexes of the collection. The facets and aggregates of the input are ignored.
+     *
+     * @param input           the {@link DataTablesInput} mapped from the Ajax request
+     * @param baseAggregation the {@link Aggregation} producing the rows, run on the collection of the repository
+     * @param outputType      the type the produced documents are read into
+     * @return a {@link DataTablesOutput}
+     */
+    <R> DataTablesOutput<R> findAll(DataTablesInput input, Aggregation baseAggregation, Class<R> outputType);
+
+    /**
+     * Returns the filtered list for the given {@link DataTablesInput}, over the documents produced by the given
+     * aggregation instead of the documents of the collection, see {@link #findAll(DataTablesInput, Aggregation, Class)}.
+     *
+     * @param input                the {@link DataTablesInput} mapped from the Ajax request
+     * @param additionalCriteria   additional {@link Criteria} to apply to the produced documents (with an "AND" clause)
+     * @param preFilteringCriteria pre-filtering {@link Criteria} to apply to the produced documents (with an "AND" clause)
+     * @param baseAggregation      the {@link Aggregation} producing the rows, run on the collection of the repository
+     * @param outputType           the type the produced documents are read into
+     * @return a {@link DataTablesOutput}
+     */
+    <R> DataTablesOutput<R> findAll(DataTablesInput input, Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria,
+                                    Aggregation baseAggregation, Class<R> outputType);
+
+    /**
+     * Returns the filtered lists for the given {@link DataTablesInput}, queried concurrently.
+     *
+     * @param inputs  the {@link DataTablesInput} mapped from the request
+     * @param timeout the time budget shared by all the queries, after which the remaining ones are interrupted and
+     *                their {@link DataTablesOutput} only contains an error
+     * @return the {@link DataTablesOutput}, in the order of the inputs
+     * @see DataTablesBatch
+     */
+    List<DataTablesOutput<T>> findAll(List<DataTablesInput> inputs, Duration timeout);
+
+    /**
+     * Returns the counts computed in the background for a {@link DataTablesInput} with
+     * {@link DataTablesInput#isCountingRecordsDeferred()} set, waiting for them up to the given timeout. If they are
+     * still being computed, the {@link DataTablesOutput} only contains the token again. The counts are kept for a
+     * minute.
+     *
+     * @param countToken the {@link DataTablesOutput#getCountToken()} returned with the page
+     * @param timeout    the maximum time to wait for the counts
+     * @return a {@link DataTablesOutput} without data, with either the counts, the token or an error
+     */
+    DataTablesOutput<T> findCounts(String countToken, Duration timeout);
+
+    /**
+     * Returns the next chunk of a page exceeding the {@link DataTablesMaxLength} of the repository. The
+     * {@link DataTablesOutput} contains the token again, unless it is the last chunk.
+     *
+     * @param nextChunkToken the {@link DataTablesOutput#getNextChunkToken()} of the previous chunk
+     * @param <R>            the type of the records of the page, as converted by the initial request
+     * @return a {@link DataTablesOutput} with the records of the chunk, or an error if the token is unknown or expired
+     * @throws IllegalStateException if the repository is not annotated with {@link DataTablesMaxLength}
+     */
+    <R> DataTablesOutput<R> findNextChunk(String nextChunkToken);
+
+    /**
+     * Exports all the records matching the given {@link DataTablesInput}, regardless of its paging parameters. If the
+     * input is unsorted or only sorted by {@code _id}, the collection is split into {@code _id} ranges which are
+     * scanned concurrently.
+     *
+     * @param input       the {@link DataTablesInput} mapped from the Ajax request
+     * @param parallelism the maximum number of {@code _id} ranges to scan concurrently
+     * @param converter   the {@link Function} to apply to the results of the query
+     * @param consumer    the {@link Consumer} receiving the chunks of records, in order
+     */
+    <R> void export(DataTablesInput input, int parallelism, Function<T, R> converter, Consumer<List<R>> consumer);
+
+    /**
+     * Exports all the records matching the given {@link DataTablesInput}, regardless of its paging parameters. If the
+     * input is unsorted or only sorted by {@code _id}, the collection is split into {@code _id} ranges which are
+     * scanned concurrently.
+     *
+     * @param input                the {@link DataTablesInput} mapped from the Ajax request
+     * @param additionalCriteria   additional {@link Criteria} to apply to the query (with an "AND" clause)
+     * @param preFilteringCriteria pre-filtering {@link Criteria} to apply to the query (with an "AND" clause)
+     * @param parallelism          the maximum number of {@code _id} ranges to scan concurrently
+     * @param converter            the {@link Function} to apply to the results of the query
+     * @param consumer             the {@link Consumer} receiving the chunks of records, in order
+     */
+    <R> void export(DataTablesInput input, Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria,
+                    int parallelism, Function<T, R> converter, Consumer<List<R>> consumer);
+
+    /**
+     * Recomputes the tokens of the field declared by the {@link DataTablesSearchIndex} annotation of the entity for all
+     * the records, then creates its index. The index is only created once all the tokens are written, since the
+     * repositories only search the tokens of an indexed field.
+     *
+     * @return the number of records
+     * @throws IllegalStateException if the entity is not annotated with {@link DataTablesSearchIndex}
+     */
+    long rebuildSearchIndex();
+
+    /**
+     * Recounts the records of each partition declared by the {@link DataTablesCounters} annotation of the repository,
+     * and replaces the counters.
+     *
+     * @return the number of partitions
+     * @throws IllegalStateException if the repository is not annotated with {@link DataTablesCounters}
+     */
+    long reconcileCounters();
+
+    /**
+     * Notifies the changes of the records of the page matching the given {@link DataTablesInput}, and of the records
+     * entering its filter, until the returned subscription is closed. The page is resolved once, when subscribing.
+     * <p>
+     * This requires a replica set or a sharded cluster, since the changes are read from the change stream of the
+     * collection.
+     *
+     * @param input    the {@link DataTablesInput} mapped from the Ajax request
+     * @param listener the {@link Consumer} receiving the changes, on a dedicated thread
+     * @return a {@link DataTablesSubscription}, to be closed when the page is not displayed anymore
+     */
+    DataTablesSubscription subscribe(DataTablesInput input, Consumer<DataTablesDelta<T>> listener);
+
+    /**
+     * Notifies the changes of the records of the page matching the given {@link DataTablesInput}, and of the records
+     * entering its filter, until the returned subscription is closed. The page is resolved once, when subscribing.
+     * <p>
+     * This requires a replica set or a sharded cluster, since the changes are read from the change stream of the
+     * collection.
+     *
+     * @param input     the {@link DataTablesInput} mapped from the Ajax request
+     * @param converter the {@link Function} to apply to the records of the changes
+     * @param listener  the {@link Consumer} receiving the changes, on a dedicated thread
+     * @return a {@link DataTablesSubscription}, to be closed when the page is not displayed anymore
+     */
+    <R> DataTablesSubscription subscribe(DataTablesInput input, Function<T, R> converter, Consumer<DataTablesDelta<R>> listener);
+
+    /**
+     * Notifies the changes of the records of the page matching the given {@link DataTablesInput}, and of the records
+     * entering its filter, until the returned subscription is closed. The page is resolved once, when subscribing.
+     * <p>
+     * This requires a replica set or a sharded cluster, since the changes are read from the change stream of the
+     * collection.
+     *
+     * @param input                the {@link DataTablesInput} mapped from the Ajax request
+     * @param additionalCriteria   additional {@link Criteria} to apply to the query (with an "AND" clause)
+     * @param preFilteringCriteria pre-filtering {@link Criteria} to apply to the query (with an "AND" clause)
+     * @param listener             the {@link Consumer} receiving the changes, on a dedicated thread
+     * @return a {@link DataTablesSubscription}, to be closed when the page is not displayed anymore
+     */
+    DataTablesSubscription subscribe(DataTablesInput input, Collection<Criteria> additionalCriteria,
+                                     Collection<Criteria> preFilteringCriteria, Consumer<DataTablesDelta<T>> listener);
+
+    /**
+     * Notifies the changes of the records of the page matching the given {@link DataTablesInput}, and of the records
+     * entering its filter, until the returned subscription is closed. The page is resolved once, when subscribing.
+     * <p>
+     * This requires a replica set or a sharded cluster, since the changes are read from the change stream of the
+     * collection.
+     *
+     * @param input                the {@link DataTablesInput} mapped from the Ajax request
+     * @param additionalCriteria   additional {@link Criteria} to apply to the query (with an "AND" clause)
+     * @param preFilteringCriteria pre-filtering {@link Criteria} to apply to the query (with an "AND" clause)
+     * @param converter            the {@link Function} to apply to the records of the changes
+     * @param listener             the {@link Consumer} receiving the changes, on a dedicated thread
+     * @return a {@link DataTablesSubscription}, to be closed when the page is not displayed anymore
+     */
+    <R> DataTablesSubscription subscribe(DataTablesInput input, Collection<Criteria> additionalCriteria,
+                                         Collection<Criteria> preFilteringCriteria, Function<T, R> converter,
+                                         Consumer<DataTablesDelta<R>> listener);
+
+    /**
+     * Clears the pages cached by the {@code findAll} methods, if the repository is annotated with
+     * {@link DataTablesPageCache}, the pages prefetched if it is annotated with {@link DataTablesPrefetch}, and the
+     * counts computed for {@link DataTablesInput#isCountingRecordsDeferred()}.
+     */
+    void evictPageCache();
+
+    /**
+     * Returns the hits and misses of the prefetch buffer, if the repository is annotated with {@link DataTablesPrefetch}.
+     *
+     * @return a {@link DataTablesPrefetchStats}
+     */
+    DataTablesPrefetchStats getPrefetchStats();
+
 }
@@ -1,34 +1,65 @@
 package org.springframework.data.mongodb.datatables;
 
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ListableBeanFactory;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
 import org.springframework.data.mongodb.repository.support.MongoRepositoryFactoryBean;
+import org.springframework.data.repository.core.RepositoryInformation;
 import org.springframework.data.repository.core.RepositoryMetadata;
 
 import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public final class DataTablesRepositoryFactoryBean<R extends MongoRepository<T, ID>, T, ID extends Serializable>
-        extends MongoRepositoryFactoryBean<R, T, ID> {
+        extends MongoRepositoryFactoryBean<R, T, ID> implements DisposableBean {
+
+    private final List<DataTablesRepositoryImpl<?, ?>> repositories = new CopyOnWriteArrayList<>();
+    private boolean searchIndexListener;
 
     public DataTablesRepositoryFactoryBean(Class<? extends R> repositoryInterface) {
         super(repositoryInterface);
     }
 
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        super.setBeanFactory(beanFactory);
+        this.searchIndexListener = beanFactory instanceof ListableBeanFactory
+                && ((ListableBeanFactory) beanFactory).getBeanNamesForType(DataTablesSearchIndexListener.class, true, false).length > 0;
+    }
+
     @Override
     protected MongoRepositoryFactory getFactoryInstance(MongoOperations operations) {
-        return new DataTablesRepositoryFactory(operations);
+        return new DataTablesRepositoryFactory(operations, repositories, searchIndexListener);
+    }
+
+    /**
+     * Stops the background tasks of the created repositories.
+     */
+    @Override
+    public void destroy() {
+        repositories.forEach(DataTablesRepositoryImpl::close);
     }
 
     private static class DataTablesRepositoryFactory extends MongoRepositoryFactory {
 
+        private final List<DataTablesRepositoryImpl<?, ?>> repositories;
+        private final boolean searchIndexListener;
+
         /**
          * Creates a new {@link MongoRepositoryFactory} with the given {@link MongoOperations}.
          *
          * @param mongoOperations must not be {@literal null}.
          */
-        DataTablesRepositoryFactory(MongoOperations mongoOperations) {
+        DataTablesRepositoryFactory(MongoOperations mongoOperations, List<DataTablesRepositoryImpl<?, ?>> repositories,
+                                    boolean searchIndexListener) {
             super(mongoOperations);
+            this.repositories = repositories;
+            this.searchIndexListener = searchIndexListener;
         }
 
         @Override
@@ -40,5 +71,15 @@ public final class DataTablesRepositoryFactoryBean<R extends MongoRepository<T,
                 return super.getRepositoryBaseClass(metadata);
             }
         }
+
+        @Override
+        protected Object getTargetRepository(RepositoryInformation information) {
+            Object repository = super.getTargetRepository(information);
+            if (repository instanceof DataTablesRepositoryImpl) {
+                ((DataTablesRepositoryImpl<?, ?>) repository).configure(information.getRepositoryInterface(), searchIndexListener);
+                repositories.add((DataTablesRepositoryImpl<?, ?>) repository);
+            }
+            return repository;
+        }
     }
 }
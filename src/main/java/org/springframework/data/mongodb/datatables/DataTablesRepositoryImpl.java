@@ -1,27 +1,129 @@
 package org.springframework.data.mongodb.datatables;
 
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Collation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
 import org.springframework.data.mongodb.repository.support.SimpleMongoRepository;
+import org.springframework.util.StringUtils;
 
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.nCopies;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.summingLong;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
+import static org.springframework.core.annotation.AnnotatedElementUtils.findMergedAnnotation;
+import static org.springframework.core.annotation.AnnotatedElementUtils.findMergedRepeatableAnnotations;
+import static org.springframework.util.ObjectUtils.isEmpty;
 
 final class DataTablesRepositoryImpl<T, ID extends Serializable> extends SimpleMongoRepository<T, ID>
         implements DataTablesRepository<T, ID> {
 
+    private static final Log logger = LogFactory.getLog(DataTablesRepositoryImpl.class);
+
+    private static final long MIN_WATCH_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_WATCH_BACKOFF_MILLIS = 60_000;
+
+    /**
+     * Maximum duration a request waits for an identical request being executed, before querying on its own.
+     */
+    private static final long IN_FLIGHT_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Maximum number of records returned per group by {@link #findAllGrouped(DataTablesInput, String)}.
+     */
+    static final int MAX_GROUP_ROWS = 1000;
+
     private final MongoEntityInformation<T, ID> metadata;
     private final MongoOperations mongoOperations;
+    private final Aggregations aggregations;
+    private final ConcurrentMap<DataTablesKey, InFlightQuery> inFlight = new ConcurrentHashMap<>();
+    private final DeferredCounts deferredCounts = new DeferredCounts();
+
+    private ReadPreference countReadPreference;
+    private ReadPreference pageReadPreference;
+    private Collation collation;
+    private boolean collateCriteria;
+    private List<DataTablesHint> hints = emptyList();
+    private PageCache<Document> pageCache;
+    private PageCache<T> prefetchBuffer;
+    private final LongAdder prefetchHits = new LongAdder();
+    private final LongAdder prefetchMisses = new LongAdder();
+    private final LongAdder prefetchFetched = new LongAdder();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private Bulkhead bulkhead;
+    private DataTablesSearchIndex searchIndex;
+    private boolean searchIndexListener;
+    private volatile boolean searchIndexReady;
+    private PlanGuard planGuard;
+    private PartitionCounters counters;
+    private ScheduledExecutorService reconciler;
+    private ChunkedCursors cursors;
+    private volatile boolean closed;
+    private volatile Thread watcher;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> watchCursor;
+
+    /**
+     * Opens the change streams of the subscriptions, replaced by the tests since a standalone server has none.
+     */
+    ChangeStreamSource changeStreamSource = this::watch;
 
     /**
      * Creates a new {@link SimpleMongoRepository} for the given {@link MongoEntityInformation} and {@link MongoTemplate}.
@@ -33,6 +135,424 @@ final class DataTablesRepositoryImpl<T, ID extends Serializable> extends SimpleM
         super(metadata, mongoOperations);
         this.metadata = metadata;
         this.mongoOperations = mongoOperations;
+        this.aggregations = new Aggregations(metadata, mongoOperations);
+    }
+
+    /**
+     * Applies the configuration annotations found on the repository interface.
+     *
+     * @param repositoryInterface the interface extending {@link DataTablesRepository}
+     * @param searchIndexListener whether a {@link DataTablesSearchIndexListener} is declared
+     */
+    void configure(Class<?> repositoryInterface, boolean searchIndexListener) {
+        DataTablesReadPreference readPreference = findMergedAnnotation(repositoryInterface, DataTablesReadPreference.class);
+        if (readPreference != null) {
+            String count = StringUtils.hasText(readPreference.count()) ? readPreference.count() : readPreference.value();
+            String page = StringUtils.hasText(readPreference.page()) ? readPreference.page() : readPreference.value();
+            this.countReadPreference = toReadPreference(count, readPreference.maxStalenessSeconds());
+            this.pageReadPreference = toReadPreference(page, readPreference.maxStalenessSeconds());
+        }
+
+        DataTablesCollation collation = findMergedAnnotation(repositoryInterface, DataTablesCollation.class);
+        if (collation != null) {
+            this.collation = Collation.of(collation.locale()).strength(collation.strength());
+            this.collateCriteria = collation.collateCriteria();
+        }
+
+        Set<DataTablesHint> hints = findMergedRepeatableAnnotations(repositoryInterface, DataTablesHint.class);
+        if (!hints.isEmpty()) {
+            this.hints = new ArrayList<>(hints);
+        }
+
+        DataTablesPageCache pageCache = findMergedAnnotation(repositoryInterface, DataTablesPageCache.class);
+        if (pageCache != null) {
+            this.pageCache = new PageCache<>(pageCache.maximumWeight(), TimeUnit.SECONDS.toMillis(pageCache.timeToLiveSeconds()));
+        }
+
+        DataTablesBulkhead bulkhead = findMergedAnnotation(repositoryInterface, DataTablesBulkhead.class);
+        if (bulkhead != null) {
+            String namespace = mongoOperations.getCollection(metadata.getCollectionName()).getNamespace().getFullName();
+            this.bulkhead = Bulkhead.of(namespace, metadata.getCollectionName(), bulkhead);
+        }
+
+        DataTablesPrefetch prefetch = findMergedAnnotation(repositoryInterface, DataTablesPrefetch.class);
+        if (prefetch != null) {
+            this.prefetchBuffer = new PageCache<>(prefetch.maximumWeight(), TimeUnit.SECONDS.toMillis(prefetch.timeToLiveSeconds()));
+        }
+
+        if (pageCache != null && pageCache.evictOnChange() || prefetch != null && prefetch.evictOnChange()) {
+            this.watcher = Thread.ofVirtual().name("datatables-page-cache-" + metadata.getCollectionName()).start(this::evictPageCacheOnChange);
+        }
+
+        DataTablesPlanGuard planGuard = findMergedAnnotation(repositoryInterface, DataTablesPlanGuard.class);
+        if (planGuard != null) {
+            this.planGuard = new PlanGuard(planGuard, aggregations, metadata.getCollectionName());
+        }
+
+        DataTablesCounters counters = findMergedAnnotation(repositoryInterface, DataTablesCounters.class);
+        if (counters != null) {
+            this.counters = new PartitionCounters(counters, mongoOperations, aggregations, metadata.getCollectionName());
+            if (counters.reconcileIntervalSeconds() > 0) {
+                this.reconciler = Executors.newSingleThreadScheduledExecutor(
+                        Thread.ofVirtual().name("datatables-counters-" + metadata.getCollectionName()).factory());
+                reconciler.scheduleWithFixedDelay(this::reconcileCountersQuietly, counters.reconcileIntervalSeconds(),
+                        counters.reconcileIntervalSeconds(), TimeUnit.SECONDS);
+            }
+        }
+
+        DataTablesMaxLength maxLength = findMergedAnnotation(repositoryInterface, DataTablesMaxLength.class);
+        if (maxLength != null) {
+            this.cursors = new ChunkedCursors(maxLength, metadata.getCollectionName());
+        }
+
+        this.searchIndex = findMergedAnnotation(metadata.getJavaType(), DataTablesSearchIndex.class);
+        this.searchIndexListener = searchIndexListener;
+        if (searchIndex != null) {
+            if (!searchIndexListener) {
+                logger.warn("No DataTablesSearchIndexListener is declared, so the global search of "
+                        + metadata.getJavaType().getName() + " ignores its @DataTablesSearchIndex");
+            } else if (!hasSearchIndex()) {
+                logger.warn("The index of " + metadata.getCollectionName() + "." + searchIndex.field()
+                        + " is missing, so the global search ignores it until rebuildSearchIndex() is called");
+            } else {
+                this.searchIndexReady = true;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the collection has an index starting with the field of the {@link DataTablesSearchIndex}, which
+     * is created by {@link #rebuildSearchIndex()} once the tokens of the existing records are written.
+     */
+    private boolean hasSearchIndex() {
+        try {
+            return mongoOperations.indexOps(metadata.getCollectionName()).getIndexInfo().stream()
+                    .anyMatch(index -> !index.getIndexFields().isEmpty()
+                            && index.getIndexFields().get(0).getKey().equals(searchIndex.field()));
+        } catch (RuntimeException e) {
+            logger.warn("Unable to list the indexes of the collection " + metadata.getCollectionName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the {@link DataTablesSearchIndex} to search with, or {@code null} if its tokens are not maintained (no
+     * listener) or not written for all the records yet (no index): the global search is then an {@code $or} of one
+     * query per column.
+     */
+    private DataTablesSearchIndex getSearchIndex() {
+        return searchIndexReady ? searchIndex : null;
+    }
+
+    /**
+     * Stops the background tasks of the repository, once its application context is closed.
+     */
+    void close() {
+        closed = true;
+        Thread watcher = this.watcher;
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> watchCursor = this.watchCursor;
+        if (watchCursor != null) {
+            watchCursor.close();
+        }
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+        }
+        // the prefetches and the deferred counts
+        executor.shutdownNow();
+        if (cursors != null) {
+            cursors.close();
+        }
+    }
+
+    /**
+     * Watches the change stream of the collection until the repository is closed, evicting the page cache and the
+     * prefetch buffer on every change. After a failure (a network error, a primary election...), the change stream is resumed after the last
+     * seen change, with an exponential backoff.
+     */
+    private void evictPageCacheOnChange() {
+        BsonDocument resumeToken = null;
+        long backoffMillis = MIN_WATCH_BACKOFF_MILLIS;
+        while (!closed) {
+            boolean resuming = resumeToken != null;
+            boolean opened = false;
+            try {
+                ChangeStreamIterable<Document> changeStream = mongoOperations.getCollection(metadata.getCollectionName()).watch();
+                try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor =
+                             (resuming ? changeStream.resumeAfter(resumeToken) : changeStream).cursor()) {
+                    watchCursor = cursor;
+                    opened = true;
+                    if (!resuming) {
+                        // the changes made while the collection was not watched are unknown
+                        evictOnChange();
+                    }
+                    backoffMillis = MIN_WATCH_BACKOFF_MILLIS;
+                    while (!closed) {
+                        cursor.next();
+                        resumeToken = cursor.getResumeToken();
+                        evictOnChange();
+                    }
+                }
+            } catch (Exception e) {
+                if (closed) {
+                    return;
+                }
+                if (resuming && !opened) {
+                    // the resume token may have expired from the oplog
+                    resumeToken = null;
+                }
+                if (backoffMillis == MIN_WATCH_BACKOFF_MILLIS) {
+                    logger.warn("Unable to watch the collection " + metadata.getCollectionName() + ", retrying in " + backoffMillis + " ms", e);
+                } else if (logger.isDebugEnabled()) {
+                    logger.debug("Unable to watch the collection " + metadata.getCollectionName() + ", retrying in " + backoffMillis + " ms", e);
+                }
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, MAX_WATCH_BACKOFF_MILLIS);
+            } finally {
+                watchCursor = null;
+            }
+        }
+    }
+
+    private void evictOnChange() {
+        if (pageCache != null) {
+            pageCache.evictAll();
+        }
+        if (prefetchBuffer != null) {
+            prefetchBuffer.evictAll();
+        }
+        deferredCounts.evictAll();
+    }
+
+    private void reconcileCountersQuietly() {
+        try {
+            reconcileCounters();
+        } catch (Exception e) {
+            logger.warn("Unable to reconcile the counters of the collection " + metadata.getCollectionName(), e);
+        }
+    }
+
+    private static ReadPreference toReadPreference(String name, long maxStalenessSeconds) {
+        if (!StringUtils.hasText(name)) {
+            return null;
+        }
+        if (maxStalenessSeconds < 0 || ReadPreference.primary().getName().equals(name)) {
+            return ReadPreference.valueOf(name);
+        }
+        return ReadPreference.valueOf(name, emptyList(), maxStalenessSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public <S extends T> S save(S entity) {
+        if (counters == null) {
+            return super.save(entity);
+        }
+        if (metadata.isNew(entity)) {
+            return insert(entity);
+        }
+        if (!metadata.isVersioned()) {
+            Map<Document, Long> deltas = new HashMap<>();
+            S saved = replace(entity, deltas);
+            counters.increment(deltas);
+            return saved;
+        }
+
+        // the previous partition is read first, so that the entity is still saved by the base repository, which checks
+        // its @Version: a concurrent change then fails the save instead of skewing the counters
+        Map<Object, Document> previousKeys = findPartitionKeys(singletonList(metadata.getRequiredId(entity)));
+        S saved = super.save(entity);
+        counters.increment(getCounterDeltas(previousKeys, singletonList(saved)));
+        return saved;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        if (counters == null) {
+            return super.saveAll(entities);
+        }
+        List<S> list = new ArrayList<>();
+        entities.forEach(list::add);
+        if (list.stream().allMatch(metadata::isNew)) {
+            return insert(list);
+        }
+        if (!metadata.isVersioned()) {
+            Map<Document, Long> deltas = new HashMap<>();
+            List<S> saved = new ArrayList<>();
+            for (S entity : list) {
+                if (metadata.isNew(entity)) {
+                    S inserted = super.insert(entity);
+                    deltas.merge(counters.keyOf(inserted), 1L, Long::sum);
+                    saved.add(inserted);
+                } else {
+                    saved.add(replace(entity, deltas));
+                }
+            }
+            counters.increment(deltas);
+            return saved;
+        }
+
+        Map<Object, Document> previousKeys = findPartitionKeys(list.stream()
+                .filter(entity -> !metadata.isNew(entity))
+                .map(metadata::getRequiredId)
+                .collect(toList()));
+        List<S> saved = new ArrayList<>();
+        for (S entity : list) {
+            saved.add(super.save(entity));
+        }
+        counters.increment(getCounterDeltas(previousKeys, saved));
+        return saved;
+    }
+
+    /**
+     * Replaces (or inserts) the given unversioned entity, and adds the change of its partition to the given deltas. The
+     * previous partition is read from the document replaced by the same operation, so that concurrent saves of the
+     * record cannot skew the counters.
+     */
+    private <S extends T> S replace(S entity, Map<Document, Long> deltas) {
+        Query query = Query.query(Criteria.where(metadata.getIdAttribute()).is(metadata.getRequiredId(entity)));
+        query.fields().include(counters.getFields().toArray(new String[0]));
+        // without returnNew, the document before the replacement
+        S previous = mongoOperations.findAndReplace(query, entity, FindAndReplaceOptions.options().upsert(), metadata.getCollectionName());
+        addCounterDelta(deltas, counters.keyOf(entity), previous == null ? null : counters.keyOf(previous));
+        return entity;
+    }
+
+    /**
+     * Returns the partitions of the records with the given ids, indexed by id.
+     */
+    private Map<Object, Document> findPartitionKeys(Collection<?> ids) {
+        Map<Object, Document> keys = new HashMap<>();
+        if (ids.isEmpty()) {
+            return keys;
+        }
+        Query query = Query.query(Criteria.where(metadata.getIdAttribute()).in(ids));
+        query.fields().include(counters.getFields().toArray(new String[0]));
+        for (T previous : mongoOperations.find(query, metadata.getJavaType(), metadata.getCollectionName())) {
+            keys.put(metadata.getRequiredId(previous), counters.keyOf(previous));
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the changes of the counters caused by saving the given entities, whose previous partitions are given.
+     */
+    private Map<Document, Long> getCounterDeltas(Map<Object, Document> previousKeys, List<? extends T> saved) {
+        Map<Document, Long> deltas = new HashMap<>();
+        for (T entity : saved) {
+            addCounterDelta(deltas, counters.keyOf(entity), previousKeys.get(metadata.getRequiredId(entity)));
+        }
+        return deltas;
+    }
+
+    private static void addCounterDelta(Map<Document, Long> deltas, Document key, Document previousKey) {
+        if (!key.equals(previousKey)) {
+            deltas.merge(key, 1L, Long::sum);
+            if (previousKey != null) {
+                deltas.merge(previousKey, -1L, Long::sum);
+            }
+        }
+    }
+
+    @Override
+    public <S extends T> S insert(S entity) {
+        S inserted = super.insert(entity);
+        if (counters != null) {
+            counters.increment(counters.keyOf(inserted), 1);
+        }
+        return inserted;
+    }
+
+    @Override
+    public <S extends T> List<S> insert(Iterable<S> entities) {
+        List<S> inserted = super.insert(entities);
+        if (counters != null) {
+            counters.increment(inserted.stream().collect(groupingBy(counters::keyOf, counting())));
+        }
+        return inserted;
+    }
+
+    @Override
+    public void deleteById(ID id) {
+        if (counters == null) {
+            super.deleteById(id);
+            return;
+        }
+        T removed = mongoOperations.findAndRemove(Query.query(Criteria.where(metadata.getIdAttribute()).is(id)),
+                metadata.getJavaType(), metadata.getCollectionName());
+        if (removed != null) {
+            counters.increment(counters.keyOf(removed), -1);
+        }
+    }
+
+    @Override
+    public void delete(T entity) {
+        if (counters == null) {
+            super.delete(entity);
+            return;
+        }
+        if (!metadata.isVersioned()) {
+            deleteById(metadata.getRequiredId(entity));
+            return;
+        }
+
+        // like for save, the base repository checks the @Version, and fails if the record changed since it was read
+        Object id = metadata.getRequiredId(entity);
+        Document previousKey = findPartitionKeys(singletonList(id)).get(id);
+        super.delete(entity);
+        if (previousKey != null) {
+            counters.increment(previousKey, -1);
+        }
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends ID> ids) {
+        if (counters == null) {
+            super.deleteAllById(ids);
+            return;
+        }
+        List<Object> list = new ArrayList<>();
+        ids.forEach(list::add);
+        List<T> removed = mongoOperations.findAllAndRemove(Query.query(Criteria.where(metadata.getIdAttribute()).in(list)),
+                metadata.getJavaType(), metadata.getCollectionName());
+        counters.increment(removed.stream().collect(groupingBy(counters::keyOf, summingLong(entity -> -1L))));
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        if (counters == null) {
+            super.deleteAll(entities);
+            return;
+        }
+        if (metadata.isVersioned()) {
+            // each version must be checked
+            entities.forEach(this::delete);
+            return;
+        }
+        List<ID> ids = new ArrayList<>();
+        entities.forEach(entity -> ids.add(metadata.getRequiredId(entity)));
+        deleteAllById(ids);
+    }
+
+    @Override
+    public void deleteAll() {
+        super.deleteAll();
+        if (counters != null) {
+            counters.clear();
+        }
+    }
+
+    @Override
+    public long reconcileCounters() {
+        if (counters == null) {
+            throw new IllegalStateException("The repository of " + metadata.getJavaType().getName() + " is not annotated with @DataTablesCounters");
+        }
+        return counters.reconcile();
     }
 
     @Override
@@ -67,69 +587,1060 @@ final class DataTablesRepositoryImpl<T, ID extends Serializable> extends SimpleM
         return findAll(input, additionalCriteriaList, preFilteringCriteriaList, converter);
     }
 
+    @Override
+    public List<DataTablesOutput<T>> findAll(List<DataTablesInput> inputs, Duration timeout) {
+        List<Function<DataTablesInput, DataTablesOutput<T>>> queries = nCopies(inputs.size(), this::findAll);
+        return DataTablesBatch.execute(inputs, queries, timeout);
+    }
+
     private <R> DataTablesOutput<R> findAll(DataTablesInput input, Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria, Function<T, R> converter) {
-        DataTablesOutput<R> output = new DataTablesOutput<>();
-        output.setDraw(input.getDraw());
         if (input.getLength() == 0) {
+            DataTablesOutput<R> output = new DataTablesOutput<>();
+            output.setDraw(input.getDraw());
             return output;
         }
 
-        try {
-            int inputLength = input.getLength();
-            if (inputLength > -1) {
-                input.setLength(inputLength + 1);
+        if (input.isCountingRecordsDeferred() && !input.isCountingRecordsDisabled()) {
+            // a copy, since the input of the caller may be shared with other threads
+            DataTablesInput uncounted = input.withPaging(input.getStart(), input.getLength());
+            uncounted.setCountingRecordsDisabled(true);
+            DataTablesOutput<R> output = findAll(uncounted, additionalCriteria, preFilteringCriteria, converter);
+            if (output.getError() == null) {
+                output.setCountToken(deferCounts(input, additionalCriteria, preFilteringCriteria));
             }
+            return output;
+        }
 
-            DataTablesCriteria criteria = new DataTablesCriteria(input, preFilteringCriteria, additionalCriteria);
+        if (isChunked(input)) {
+            return findAllChunked(input, additionalCriteria, preFilteringCriteria, converter);
+        }
 
-            if (!input.isCountingRecordsDisabled()) {
-                long recordsTotal = count(preFilteringCriteria);
-                output.setRecordsTotal(recordsTotal);
-                if (recordsTotal == 0) {
-                    return output;
-                }
-                long recordsFiltered = mongoOperations.count(criteria.toCountQuery(), metadata.getCollectionName());
-                output.setRecordsFiltered(recordsFiltered);
-                if (recordsFiltered == 0) {
-                    return output;
-                }
-            }
+        DataTablesKey key = DataTablesKey.of(input, additionalCriteria, preFilteringCriteria);
+        DataTablesOutput<Document> cached = pageCache == null ? null : pageCache.get(key);
+        // the cached records are shared with the other requests
+        DataTablesOutput<T> page = cached == null ? null : restore(cached);
+        if (page == null && prefetchBuffer != null && prefetchBuffer.contains(key)) {
+            // prefetched, but possibly not fetched yet
+            page = prefetchBuffer.take(key);
+            (page == null ? prefetchMisses : prefetchHits).increment();
+        }
+        if (page == null) {
+            page = queryOnce(key, input, additionalCriteria, preFilteringCriteria);
+        }
+        if (prefetchBuffer != null && page.getHasNext() && input.getLength() > 0) {
+            prefetch(input.withPaging(input.getStart() + input.getLength(), input.getLength()), additionalCriteria,
+                    preFilteringCriteria, page);
+        }
 
-            List<T> data = mongoOperations.find(criteria.toQuery(), metadata.getJavaType(), metadata.getCollectionName());
+        return render(page, input, converter);
+    }
 
-            if (inputLength > -1) {
-                if (data.size() == inputLength + 1) {
-                    output.setHasNext(true);
-                    data.remove(inputLength);
-                } else {
-                    output.setHasNext(false);
+    /**
+     * Returns the first chunk of the given page, and keeps its cursor open for the following chunks, so that all the
+     * chunks are read from the same cursor (and not from the page cache, nor with a second query).
+     */
+    @SuppressWarnings("unchecked")
+    private <R> DataTablesOutput<R> findAllChunked(DataTablesInput input, Collection<Criteria> additionalCriteria,
+                                                   Collection<Criteria> preFilteringCriteria, Function<T, R> converter) {
+        DataTablesInput page = withNextRecord(input);
+        return admit(page, true, () -> {
+            DataTablesOutput<T> summary = new DataTablesOutput<>();
+            DataTablesOutput<R> output;
+            try {
+                DataTablesCriteria criteria = new DataTablesCriteria(page, preFilteringCriteria, additionalCriteria, getCollation(additionalCriteria, preFilteringCriteria), hints, getSearchIndex());
+                Query streamQuery = guard(criteria.toQuery(), summary);
+                if (streamQuery == null || !count(input, criteria, preFilteringCriteria, summary)) {
+                    return render(summary, input, converter);
                 }
-            } else {
-                output.setHasNext(false);
+
+                Stream<T> stream = mongoOperations.stream(withReadPreference(streamQuery, pageReadPreference),
+                        metadata.getJavaType(), metadata.getCollectionName());
+                output = render(summary, input, converter);
+                readFirstChunk(page, input.getLength(), stream, converter, limit -> {
+                    List<T> data = mongoOperations.find(withReadPreference(streamQuery.limit(limit), pageReadPreference),
+                            metadata.getJavaType(), metadata.getCollectionName());
+                    return converter == null ? (List<R>) data : data.stream().map(converter).collect(toList());
+                }, output);
+            } catch (Exception e) {
+                output = new DataTablesOutput<>();
+                output.setDraw(input.getDraw());
+                output.setError(e.toString());
             }
+            return output;
+        });
+    }
 
-            output.setData(converter == null ? (List<R>) data : data.stream().map(converter).collect(toList()));
+    /**
+     * Returns whether the given input exceeds the {@link DataTablesMaxLength} of the repository, if any, and is thus
+     * delivered in chunks.
+     */
+    private boolean isChunked(DataTablesInput input) {
+        return cursors != null && (input.getLength() == -1 || input.getLength() > cursors.getChunkSize());
+    }
 
-        } catch (Exception e) {
-            output.setError(e.toString());
+    /**
+     * Reads the first chunk of the given stream into the given output, and keeps the stream open under a token for the
+     * following chunks. If too many cursors are open, the stream is closed and the output is truncated to a single
+     * chunk, read with the given function (which reads up to the given number of records with the same query).
+     *
+     * @param page      the input of the stream, used to admit the reads of the following chunks
+     * @param remaining the number of records to read, or -1 to read them all, see
+     *                  {@link ChunkedCursors#open(Stream, Function, DataTablesInput, long)}
+     */
+    private <S, R> void readFirstChunk(DataTablesInput page, long remaining, Stream<S> stream, Function<S, R> converter,
+                                       IntFunction<List<R>> readTruncated, DataTablesOutput<R> output) {
+        int chunkSize = cursors.getChunkSize();
+        String token = cursors.open(stream, converter, page, remaining);
+        if (token == null) {
+            List<R> data = readTruncated.apply(chunkSize + 1);
+            output.setHasNext(data.size() > chunkSize);
+            output.setData(new ArrayList<>(data.subList(0, Math.min(data.size(), chunkSize))));
+            output.setWarning("The response was truncated to " + chunkSize + " records, since too many cursors are open");
+            return;
+        }
+        DataTablesOutput<R> chunk = cursors.next(token);
+        output.setData(chunk.getData());
+        output.setHasNext(chunk.getHasNext());
+        output.setNextChunkToken(chunk.getNextChunkToken());
+        output.setError(chunk.getError());
+    }
+
+    /**
+     * Returns a copy of the given input with one more record, to tell whether there is a next page once its cursor is
+     * exhausted.
+     */
+    private static DataTablesInput withNextRecord(DataTablesInput input) {
+        return input.withPaging(input.getStart(), input.getLength() == -1 ? -1 : input.getLength() + 1);
+    }
+
+    private static List<Document> withLimit(List<Document> pipeline, int limit) {
+        List<Document> limited = new ArrayList<>(pipeline);
+        limited.add(new Document("$limit", limit));
+        return limited;
+    }
+
+    @Override
+    public <R> DataTablesOutput<R> findNextChunk(String nextChunkToken) {
+        if (cursors == null) {
+            throw new IllegalStateException("The repository of " + metadata.getJavaType().getName() + " is not annotated with @DataTablesMaxLength");
+        }
+        DataTablesInput input = cursors.getInput(nextChunkToken);
+        if (input == null) {
+            // unknown or expired
+            return cursors.next(nextChunkToken);
         }
+        return admit(input, true, () -> cursors.next(nextChunkToken));
+    }
+
+    /**
+     * Computes the counts of the given input in the background, unless they are already known, and returns their token.
+     */
+    private String deferCounts(DataTablesInput input, Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria) {
+        // the counts do not depend on the paging, the order, the facets or the aggregates
+        DataTablesInput filter = input.withPaging(0, 0);
+        filter.setOrder(null);
+        filter.setFacets(null);
+        filter.setAggregates(null);
 
+        DataTablesCriteria criteria = new DataTablesCriteria(filter, preFilteringCriteria, additionalCriteria, getCollation(additionalCriteria, preFilteringCriteria), hints, getSearchIndex());
+        Query countQuery = withReadPreference(criteria.toCountQuery(), countReadPreference);
+
+        return deferredCounts.submit(DataTablesKey.of(filter, additionalCriteria, preFilteringCriteria), () -> admit(filter, true, () -> {
+            DataTablesOutput<T> output = new DataTablesOutput<>();
+            output.setRecordsTotal(count(preFilteringCriteria, countQuery.getCollation().orElse(null)));
+            output.setRecordsFiltered(output.getRecordsTotal() == 0 ? 0L : mongoOperations.count(countQuery, metadata.getCollectionName()));
+            return output;
+        }), executor);
+    }
+
+    @Override
+    public DataTablesOutput<T> findCounts(String countToken, Duration timeout) {
+        DataTablesOutput<T> output = new DataTablesOutput<>();
+        try {
+            DataTablesOutput<?> counts = deferredCounts.get(countToken, timeout);
+            if (counts == null) {
+                output.setCountToken(countToken);
+            } else {
+                output.setRecordsTotal(counts.getRecordsTotal());
+                output.setRecordsFiltered(counts.getRecordsFiltered());
+                output.setError(counts.getError());
+            }
+        } catch (IllegalArgumentException e) {
+            output.setError(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            output.setError(e.toString());
+        }
         return output;
     }
 
-    private long count(Collection<Criteria> preFilteringCriteria) {
-        if (preFilteringCriteria == null || preFilteringCriteria.isEmpty() || preFilteringCriteria.stream().allMatch(Objects::isNull)) {
-            return mongoOperations.estimatedCount(metadata.getCollectionName());
-        } else {
-            Query preFilteringQuery = new Query();
-            for (Criteria criteria : preFilteringCriteria) {
-                if (criteria != null) {
-                    preFilteringQuery.addCriteria(criteria);
+    /**
+     * Queries the given page, unless an identical request (except for its draw counter) is already being executed,
+     * in which case its result is awaited (up to {@link #IN_FLIGHT_TIMEOUT_MILLIS}) and shared, with copies of its
+     * records. If the identical request fails or is rejected, the page is queried on its own.
+     */
+    private DataTablesOutput<T> queryOnce(DataTablesKey key, DataTablesInput input, Collection<Criteria> additionalCriteria,
+                                          Collection<Criteria> preFilteringCriteria) {
+        InFlightQuery inFlightQuery = new InFlightQuery();
+        InFlightQuery pending = inFlight.putIfAbsent(key, inFlightQuery);
+        if (pending != null) {
+            DataTablesOutput<Document> shared = null;
+            if (pending.join()) {
+                try {
+                    shared = pending.getResult().get(IN_FLIGHT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    DataTablesOutput<T> output = new DataTablesOutput<>();
+                    output.setError(e.toString());
+                    return output;
+                } catch (ExecutionException | TimeoutException e) {
+                    shared = null;
                 }
             }
+            if (shared != null) {
+                return restore(shared);
+            }
+            // the error may be specific to the identical request, a rejection by the bulkhead for example
+            return admit(input, true, () -> query(input, additionalCriteria, preFilteringCriteria));
+        }
 
-            return mongoOperations.count(preFilteringQuery, metadata.getCollectionName());
+        DataTablesOutput<Document> snapshot = null;
+        try {
+            DataTablesOutput<T> page = admit(input, true, () -> query(input, additionalCriteria, preFilteringCriteria));
+            boolean joined = inFlightQuery.finish();
+            if ((joined || pageCache != null) && page.getError() == null) {
+                // taken before the records are returned, and possibly modified, to the caller
+                snapshot = snapshot(page);
+                if (pageCache != null) {
+                    pageCache.put(key, snapshot);
+                }
+            }
+            return page;
+        } finally {
+            inFlightQuery.finish();
+            inFlightQuery.complete(snapshot);
+            inFlight.remove(key, inFlightQuery);
         }
     }
 
+    /**
+     * Returns the given page with the BSON documents of its records, to be shared with other requests, which read
+     * their own instances from them with {@link #restore(DataTablesOutput)}.
+     */
+    private DataTablesOutput<Document> snapshot(DataTablesOutput<T> page) {
+        DataTablesOutput<Document> snapshot = new DataTablesOutput<>();
+        copySummary(page, snapshot);
+        snapshot.setData(unmodifiableList(page.getData().stream().map(entity -> {
+            Document document = new Document();
+            mongoOperations.getConverter().write(entity, document);
+            return document;
+        }).collect(toList())));
+        return snapshot;
+    }
+
+    /**
+     * Returns the page of the given snapshot. Its records are only read when accessed (once, when rendered), so that
+     * each request gets its own instances without copying them twice.
+     */
+    private DataTablesOutput<T> restore(DataTablesOutput<Document> snapshot) {
+        DataTablesOutput<T> page = new DataTablesOutput<>();
+        copySummary(snapshot, page);
+        List<Document> documents = snapshot.getData();
+        page.setData(new AbstractList<T>() {
+
+            @Override
+            public T get(int index) {
+                return read(documents.get(index));
+            }
+
+            @Override
+            public int size() {
+                return documents.size();
+            }
+        });
+        return page;
+    }
+
+    private static void copySummary(DataTablesOutput<?> page, DataTablesOutput<?> copy) {
+        copy.setRecordsTotal(page.getRecordsTotal());
+        copy.setRecordsFiltered(page.getRecordsFiltered());
+        copy.setHasNext(page.getHasNext());
+        copy.setWarning(page.getWarning());
+        copy.setFacets(page.getFacets());
+        copy.setAggregates(page.getAggregates());
+    }
+
+    /**
+     * Runs the given query once admitted by the {@link Bulkhead}, if any.
+     *
+     * @param wait whether the query may wait for a permit (up to the configured timeout)
+     */
+    private <X> DataTablesOutput<X> admit(DataTablesInput input, boolean wait, Supplier<DataTablesOutput<X>> query) {
+        if (bulkhead == null) {
+            return query.get();
+        }
+
+        boolean expensive = bulkhead.isExpensive(input);
+        String rejection;
+        try {
+            rejection = bulkhead.acquire(expensive, wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejection = e.toString();
+        }
+        if (rejection != null) {
+            DataTablesOutput<X> output = new DataTablesOutput<>();
+            output.setError(rejection);
+            return output;
+        }
+
+        try {
+            return query.get();
+        } finally {
+            bulkhead.release(expensive);
+        }
+    }
+
+    /**
+     * Asynchronously fetches the given page into the prefetch buffer, reusing the counts, facets and aggregates of the
+     * current page.
+     */
+    private void prefetch(DataTablesInput next, Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria,
+                          DataTablesOutput<T> current) {
+        DataTablesKey key = DataTablesKey.of(next, additionalCriteria, preFilteringCriteria);
+        if (!prefetchBuffer.reserve(key)) {
+            return;
+        }
+        next.setCountingRecordsDisabled(true);
+        next.setFacets(null);
+        next.setAggregates(null);
+
+        executor.execute(() -> {
+            DataTablesOutput<T> page = admit(next, false, () -> query(next, additionalCriteria, preFilteringCriteria));
+            if (page.getError() == null) {
+                page.setRecordsTotal(current.getRecordsTotal());
+                page.setRecordsFiltered(current.getRecordsFiltered());
+                page.setFacets(current.getFacets());
+                page.setAggregates(current.getAggregates());
+                page.setData(unmodifiableList(page.getData()));
+                // unless taken or evicted on change in the meantime
+                if (prefetchBuffer.fill(key, page)) {
+                    prefetchFetched.increment();
+                }
+            } else {
+                prefetchBuffer.take(key);
+            }
+        });
+    }
+
+    private DataTablesOutput<T> query(DataTablesInput input, Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria) {
+        DataTablesOutput<T> output = new DataTablesOutput<>();
+        int inputLength = input.getLength();
+
+        try {
+            if (inputLength > -1) {
+                input.setLength(inputLength + 1);
+            }
+
+            DataTablesCriteria criteria = new DataTablesCriteria(input, preFilteringCriteria, additionalCriteria, getCollation(additionalCriteria, preFilteringCriteria), hints, getSearchIndex());
+            Query pageQuery = guard(criteria.toQuery(), output);
+            if (pageQuery == null) {
+                return output;
+            }
+
+            if (!count(input, criteria, preFilteringCriteria, output)) {
+                return output;
+            }
+
+            List<T> data = mongoOperations.find(withReadPreference(pageQuery, pageReadPreference),
+                    metadata.getJavaType(), metadata.getCollectionName());
+
+            if (inputLength > -1) {
+                if (data.size() == inputLength + 1) {
+                    output.setHasNext(true);
+                    data.remove(inputLength);
+                } else {
+                    output.setHasNext(false);
+                }
+            } else {
+                output.setHasNext(false);
+            }
+
+            output.setData(data);
+
+        } catch (Exception e) {
+            output.setError(e.toString());
+        } finally {
+            input.setLength(inputLength);
+        }
+
+        return output;
+    }
+
+    /**
+     * Computes the counts (unless disabled), the facets and the aggregates of the given input, and returns whether
+     * records may match it.
+     */
+    private boolean count(DataTablesInput input, DataTablesCriteria criteria, Collection<Criteria> preFilteringCriteria,
+                          DataTablesOutput<T> output) {
+        if (input.isCountingRecordsDisabled()) {
+            if (isSummarized(input)) {
+                summarize(input, criteria, false, output);
+            }
+            return true;
+        }
+        long recordsTotal = count(preFilteringCriteria, criteria.toCountQuery().getCollation().orElse(null));
+        output.setRecordsTotal(recordsTotal);
+        if (recordsTotal == 0) {
+            return false;
+        }
+        if (isSummarized(input)) {
+            summarize(input, criteria, true, output);
+        } else {
+            output.setRecordsFiltered(mongoOperations.count(withReadPreference(criteria.toCountQuery(), countReadPreference),
+                    metadata.getCollectionName()));
+        }
+        return output.getRecordsFiltered() > 0;
+    }
+
+    /**
+     * Returns the given query, modified by the {@link PlanGuard} if any, or {@code null} if the plan guard rejects it. The
+     * rejection, or what is done for the plan, is reported in the given output.
+     */
+    private Query guard(Query query, DataTablesOutput<?> output) {
+        if (planGuard == null) {
+            return query;
+        }
+        PlanGuard.Plan plan = planGuard.inspect(query);
+        if (planGuard.isRejected(plan)) {
+            output.setError(planGuard.describe(plan));
+            return null;
+        }
+        output.setWarning(planGuard.describe(plan));
+        return planGuard.apply(query, plan);
+    }
+
+    @Override
+    public <R> DataTablesOutput<R> findAll(DataTablesInput input, Aggregation baseAggregation, Class<R> outputType) {
+        return findAll(input, emptyList(), emptyList(), baseAggregation, outputType);
+    }
+
+    @Override
+    public <R> DataTablesOutput<R> findAll(DataTablesInput input, Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria,
+                                           Aggregation baseAggregation, Class<R> outputType) {
+        if (input.getLength() == 0) {
+            DataTablesOutput<R> output = new DataTablesOutput<>();
+            output.setDraw(input.getDraw());
+            return output;
+        }
+
+        BasePipeline base = new BasePipeline(baseAggregation.toPipeline(Aggregation.DEFAULT_CONTEXT));
+        DataTablesOutput<R> output = admit(input, true, () -> query(input, additionalCriteria, preFilteringCriteria, base, outputType));
+        output.setDraw(input.getDraw());
+        return output;
+    }
+
+    /**
+     * Same as {@link #query(DataTablesInput, Collection, Collection)}, but on the documents of the given base pipeline
+     * instead of the collection.
+     */
+    private <R> DataTablesOutput<R> query(DataTablesInput input, Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria,
+                                          BasePipeline base, Class<R> outputType) {
+        DataTablesOutput<R> output = new DataTablesOutput<>();
+
+        try {
+            DataTablesCriteria criteria = new DataTablesCriteria(input, preFilteringCriteria, additionalCriteria, getCollation(additionalCriteria, preFilteringCriteria), hints, getSearchIndex());
+            Query query = criteria.toSortedQuery();
+            List<Document> pipeline = base.withFilter(aggregations.untypedFilter(query), aggregations::filter);
+
+            if (!input.isCountingRecordsDisabled()) {
+                Query preFilteringQuery = toQuery(preFilteringCriteria);
+                // counted with the collation of the filtered count, so that it cannot count more records
+                query.getCollation().ifPresent(preFilteringQuery::collation);
+                long recordsTotal = count(base.withFilter(aggregations.untypedFilter(preFilteringQuery), aggregations::filter), preFilteringQuery);
+                output.setRecordsTotal(recordsTotal);
+                if (recordsTotal == 0) {
+                    return output;
+                }
+                output.setRecordsFiltered(count(pipeline, query));
+                if (output.getRecordsFiltered() == 0) {
+                    return output;
+                }
+            }
+
+            if (!query.getSortObject().isEmpty()) {
+                pipeline.add(new Document("$sort", query.getSortObject()));
+            }
+            if (input.getStart() > 0) {
+                pipeline.add(new Document("$skip", input.getStart()));
+            }
+            if (input.getLength() > -1) {
+                pipeline.add(new Document("$limit", input.getLength() + 1));
+            }
+
+            Function<Document, R> reader = document -> mongoOperations.getConverter().read(outputType, document);
+            if (isChunked(input)) {
+                readFirstChunk(withNextRecord(input), input.getLength(), aggregations.stream(pipeline, query, pageReadPreference), reader,
+                        limit -> aggregations.aggregate(withLimit(pipeline, limit), query, pageReadPreference).stream().map(reader).collect(toList()),
+                        output);
+                return output;
+            }
+
+            List<Document> documents = aggregations.aggregate(pipeline, query, pageReadPreference);
+            output.setHasNext(input.getLength() > -1 && documents.size() == input.getLength() + 1);
+            output.setData(documents.stream()
+                    .limit(input.getLength() > -1 ? input.getLength() : Long.MAX_VALUE)
+                    .map(reader)
+                    .collect(toList()));
+
+        } catch (Exception e) {
+            output.setError(e.toString());
+        }
+
+        return output;
+    }
+
+    private long count(List<Document> pipeline, Query query) {
+        List<Document> countPipeline = new ArrayList<>(pipeline);
+        countPipeline.add(new Document("$count", "count"));
+        List<Document> results = aggregations.aggregate(countPipeline, query, countReadPreference);
+        return results.isEmpty() ? 0L : ((Number) results.get(0).get("count")).longValue();
+    }
+
+    private static boolean isSummarized(DataTablesInput input) {
+        return !isEmpty(input.getFacets()) || !isEmpty(input.getAggregates());
+    }
+
+    /**
+     * Computes the filtered count (if {@code counting} is set), the aggregates and the facets with a single
+     * aggregation, sharing the {@code $match} stage: a {@code $group} stage, or a {@code $facet} stage if facets are
+     * requested.
+     */
+    private void summarize(DataTablesInput input, DataTablesCriteria criteria, boolean counting, DataTablesOutput<T> output) {
+        List<DataTablesInput.Aggregate> aggregates = getAggregates(input);
+        List<DataTablesInput.Facet> facets = isEmpty(input.getFacets()) ? emptyList() : input.getFacets().stream()
+                .filter(facet -> facet.getColumn() < input.getColumns().size())
+                .collect(toList());
+
+        Document group = new Document("_id", null);
+        if (counting) {
+            group.append("count", new Document("$sum", 1));
+        }
+        appendAggregates(group, input, aggregates);
+
+        Query query = criteria.toCountQuery();
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(aggregations.match(query));
+        if (facets.isEmpty()) {
+            pipeline.add(new Document("$group", group));
+        } else {
+            Document facetStage = new Document();
+            if (group.size() > 1) {
+                facetStage.append("summary", singletonList(new Document("$group", group)));
+            }
+            for (int i = 0; i < facets.size(); i++) {
+                String column = input.getColumns().get(facets.get(i).getColumn()).getData();
+                facetStage.append("f" + i, asList(
+                        // the expression (contrary to the $unwind path) traverses arrays of sub-documents
+                        new Document("$project", new Document("_id", 0).append("v", "$" + aggregations.field(column))),
+                        new Document("$unwind", new Document("path", "$v").append("preserveNullAndEmptyArrays", true)),
+                        new Document("$sortByCount", "$v"),
+                        new Document("$limit", facets.get(i).getLimit())
+                ));
+            }
+            pipeline.add(new Document("$facet", facetStage));
+        }
+
+        List<Document> results = aggregations.aggregate(pipeline, query, countReadPreference);
+        Document result = results.isEmpty() ? new Document() : results.get(0);
+        Document summary = result;
+        if (!facets.isEmpty()) {
+            List<Document> summaries = result.getList("summary", Document.class, emptyList());
+            summary = summaries.isEmpty() ? new Document() : summaries.get(0);
+        }
+
+        if (counting) {
+            output.setRecordsFiltered(summary.containsKey("count") ? ((Number) summary.get("count")).longValue() : 0L);
+        }
+
+        if (!aggregates.isEmpty()) {
+            output.setAggregates(toAggregates(input, aggregates, summary));
+        }
+
+        if (!facets.isEmpty()) {
+            Map<String, List<DataTablesOutput.FacetBucket>> buckets = new LinkedHashMap<>();
+            for (int i = 0; i < facets.size(); i++) {
+                buckets.put(input.getColumns().get(facets.get(i).getColumn()).getData(), result.getList("f" + i, Document.class, emptyList())
+                        .stream()
+                        .map(bucket -> new DataTablesOutput.FacetBucket(bucket.get("_id"), ((Number) bucket.get("count")).longValue()))
+                        .collect(toList()));
+            }
+            output.setFacets(buckets);
+        }
+    }
+
+    private static List<DataTablesInput.Aggregate> getAggregates(DataTablesInput input) {
+        return isEmpty(input.getAggregates()) ? emptyList() : input.getAggregates().stream()
+                .filter(aggregate -> aggregate.getColumn() < input.getColumns().size())
+                .collect(toList());
+    }
+
+    /**
+     * Appends the accumulators of the given aggregates to the given {@code $group} specification.
+     */
+    private void appendAggregates(Document group, DataTablesInput input, List<DataTablesInput.Aggregate> aggregates) {
+        for (int i = 0; i < aggregates.size(); i++) {
+            String column = input.getColumns().get(aggregates.get(i).getColumn()).getData();
+            group.append("a" + i, new Document("$" + aggregates.get(i).getOperator().name(), "$" + aggregations.field(column)));
+        }
+    }
+
+    /**
+     * Returns the values of the given aggregates, read from the result of the {@code $group} stage.
+     */
+    private static Map<String, Map<String, Object>> toAggregates(DataTablesInput input, List<DataTablesInput.Aggregate> aggregates, Document group) {
+        Map<String, Map<String, Object>> values = new LinkedHashMap<>();
+        for (int i = 0; i < aggregates.size(); i++) {
+            String column = input.getColumns().get(aggregates.get(i).getColumn()).getData();
+            values.computeIfAbsent(column, key -> new LinkedHashMap<>())
+                    .put(aggregates.get(i).getOperator().name(), group.get("a" + i));
+        }
+        return values;
+    }
+
+    @Override
+    public DataTablesOutput<DataTablesGroup<T>> findAllGrouped(DataTablesInput input, String groupBy) {
+        return findAllGrouped(input, emptyList(), emptyList(), groupBy);
+    }
+
+    @Override
+    public DataTablesOutput<DataTablesGroup<T>> findAllGrouped(DataTablesInput input, Collection<Criteria> additionalCriteria,
+                                                              Collection<Criteria> preFilteringCriteria, String groupBy) {
+        if (input.getLength() == 0) {
+            DataTablesOutput<DataTablesGroup<T>> output = new DataTablesOutput<>();
+            output.setDraw(input.getDraw());
+            return output;
+        }
+
+        DataTablesOutput<DataTablesGroup<T>> output = admit(input, true, () -> queryGroups(input, additionalCriteria, preFilteringCriteria, groupBy));
+        output.setDraw(input.getDraw());
+        return output;
+    }
+
+    /**
+     * Queries a page of groups with a {@code $sort} stage (which can use an index on the group-by field) followed by a
+     * {@code $group} stage, then the records of these groups with a {@code $lookup} stage in the same pipeline.
+     */
+    private DataTablesOutput<DataTablesGroup<T>> queryGroups(DataTablesInput input, Collection<Criteria> additionalCriteria,
+                                                             Collection<Criteria> preFilteringCriteria, String groupBy) {
+        DataTablesOutput<DataTablesGroup<T>> output = new DataTablesOutput<>();
+
+        try {
+            DataTablesCriteria criteria = new DataTablesCriteria(input, preFilteringCriteria, additionalCriteria, getCollation(additionalCriteria, preFilteringCriteria), hints, getSearchIndex());
+            Query query = criteria.toSortedQuery();
+            Collation groupCollation = getCollation(additionalCriteria, preFilteringCriteria);
+            if (groupCollation != null) {
+                // the groups are formed with the collation of the repository, whether the search needs it or not
+                query.collation(groupCollation);
+            }
+            String field = aggregations.field(groupBy);
+            int direction = getGroupDirection(input, groupBy);
+
+            if (!input.isCountingRecordsDisabled()) {
+                Query preFilteringQuery = toQuery(preFilteringCriteria);
+                // counted with the collation forming the groups of the page
+                query.getCollation().ifPresent(preFilteringQuery::collation);
+                output.setRecordsTotal(countGroups(preFilteringQuery, field));
+                if (output.getRecordsTotal() == 0) {
+                    return output;
+                }
+                output.setRecordsFiltered(countGroups(query, field));
+                if (output.getRecordsFiltered() == 0) {
+                    return output;
+                }
+            }
+
+            List<DataTablesInput.Aggregate> aggregates = getAggregates(input);
+            Document group = new Document("_id", "$" + field).append("count", new Document("$sum", 1));
+            appendAggregates(group, input, aggregates);
+
+            List<Document> pipeline = new ArrayList<>(asList(
+                    aggregations.match(query),
+                    new Document("$sort", new Document(field, direction)),
+                    new Document("$group", group),
+                    new Document("$sort", new Document("_id", direction))
+            ));
+            if (input.getStart() > 0) {
+                pipeline.add(new Document("$skip", input.getStart()));
+            }
+            if (input.getLength() > -1) {
+                pipeline.add(new Document("$limit", input.getLength() + 1));
+            }
+            pipeline.add(lookupGroupRows(query, field));
+
+            Function<Document, DataTablesGroup<T>> reader = document -> {
+                List<T> rows = new ArrayList<>();
+                for (Document row : document.getList("rows", Document.class)) {
+                    rows.add(read(row));
+                }
+                return new DataTablesGroup<>(document.get("_id"), ((Number) document.get("count")).longValue(),
+                        aggregates.isEmpty() ? null : toAggregates(input, aggregates, document), rows);
+            };
+            if (isChunked(input)) {
+                // the groups are delivered in chunks, like the records of the other findAll methods
+                readFirstChunk(withNextRecord(input), input.getLength(), aggregations.stream(pipeline, query, pageReadPreference), reader,
+                        limit -> aggregations.aggregate(withLimit(pipeline, limit), query, pageReadPreference).stream().map(reader).collect(toList()),
+                        output);
+                return output;
+            }
+
+            List<Document> groups = aggregations.aggregate(pipeline, query, pageReadPreference);
+            output.setHasNext(input.getLength() > -1 && groups.size() > input.getLength());
+            if (output.getHasNext()) {
+                groups = groups.subList(0, input.getLength());
+            }
+            output.setData(groups.stream().map(reader).collect(toList()));
+
+        } catch (Exception e) {
+            output.setError(e.toString());
+        }
+
+        return output;
+    }
+
+    /**
+     * Returns the direction of the order of the group-by column, if any, ascending otherwise.
+     */
+    private static int getGroupDirection(DataTablesInput input, String groupBy) {
+        if (!isEmpty(input.getOrder())) {
+            for (DataTablesInput.Order order : input.getOrder()) {
+                if (order.getColumn() < input.getColumns().size() && groupBy.equals(input.getColumns().get(order.getColumn()).getData())) {
+                    return order.getDir() == DataTablesInput.Order.Direction.desc ? -1 : 1;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private long countGroups(Query query, String field) {
+        List<Document> pipeline = asList(
+                aggregations.match(query),
+                new Document("$group", new Document("_id", "$" + field)),
+                new Document("$count", "count")
+        );
+        List<Document> results = aggregations.aggregate(pipeline, query, countReadPreference);
+        return results.isEmpty() ? 0L : ((Number) results.get(0).get("count")).longValue();
+    }
+
+    /**
+     * Returns the {@code $lookup} stage adding the filtered records of each group to it, in the requested order and up
+     * to {@link #MAX_GROUP_ROWS}. The records of a group are found by an equality on the group-by field (which can use
+     * an index on it, with MongoDB 5.0 or later), then checked with an expression, so that an array is compared as a
+     * whole, exactly like the {@code $group} stage did.
+     */
+    private Document lookupGroupRows(Query query, String field) {
+        // $group puts the records without the field in the null group, like the equality of $lookup
+        Document inGroup = new Document("$expr", new Document("$eq", asList(new Document("$ifNull", asList("$" + field, null)), "$$value")));
+        List<Document> rowsPipeline = new ArrayList<>();
+        rowsPipeline.add(new Document("$match", new Document("$and", asList(aggregations.filter(query), inGroup))));
+        Document sort = aggregations.sort(query);
+        if (sort != null) {
+            rowsPipeline.add(sort);
+        }
+        rowsPipeline.add(new Document("$limit", MAX_GROUP_ROWS));
+        return new Document("$lookup", new Document("from", metadata.getCollectionName())
+                .append("localField", "_id")
+                .append("foreignField", field)
+                .append("let", new Document("value", "$_id"))
+                .append("pipeline", rowsPipeline)
+                .append("as", "rows"));
+    }
+
+    /**
+     * Returns a copy of the given page for the given input, converting its data if needed.
+     */
+    @SuppressWarnings("unchecked")
+    private <R> DataTablesOutput<R> render(DataTablesOutput<T> page, DataTablesInput input, Function<T, R> converter) {
+        DataTablesOutput<R> output = new DataTablesOutput<>();
+        output.setDraw(input.getDraw());
+        if (input.isArrayRows()) {
+            output.setColumns(input.getColumns().stream().map(DataTablesInput.Column::getData).collect(toList()));
+        }
+        output.setRecordsTotal(page.getRecordsTotal());
+        output.setRecordsFiltered(page.getRecordsFiltered());
+        output.setHasNext(page.getHasNext());
+        output.setError(page.getError());
+        output.setWarning(page.getWarning());
+        output.setFacets(page.getFacets());
+        output.setAggregates(page.getAggregates());
+
+        try {
+            // the page may be shared with other requests
+            output.setData(converter == null ? new ArrayList<>((List<R>) page.getData()) : page.getData().stream().map(converter).collect(toList()));
+        } catch (Exception e) {
+            output.setError(e.toString());
+        }
+
+        return output;
+    }
+
+    @Override
+    public void evictPageCache() {
+        if (pageCache != null) {
+            pageCache.evictAll();
+        }
+        if (prefetchBuffer != null) {
+            prefetchBuffer.evictAll();
+        }
+        deferredCounts.evictAll();
+    }
+
+    @Override
+    public DataTablesPrefetchStats getPrefetchStats() {
+        return new DataTablesPrefetchStats(prefetchHits.sum(), prefetchMisses.sum(), prefetchFetched.sum());
+    }
+
+    @Override
+    public <R> void export(DataTablesInput input, int parallelism, Function<T, R> converter, Consumer<List<R>> consumer) {
+        export(input, emptyList(), emptyList(), parallelism, converter, consumer);
+    }
+
+    @Override
+    public <R> void export(DataTablesInput input, Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria,
+                           int parallelism, Function<T, R> converter, Consumer<List<R>> consumer) {
+        DataTablesCriteria criteria = new DataTablesCriteria(input, preFilteringCriteria, additionalCriteria, getCollation(additionalCriteria, preFilteringCriteria), hints, getSearchIndex());
+        new PartitionedExport<>(metadata, mongoOperations, aggregations, pageReadPreference, converter).export(criteria.toSortedQuery(), parallelism, consumer);
+    }
+
+    @Override
+    public long rebuildSearchIndex() {
+        if (searchIndex == null) {
+            throw new IllegalStateException("The entity " + metadata.getJavaType().getName() + " is not annotated with @DataTablesSearchIndex");
+        }
+
+        String collectionName = metadata.getCollectionName();
+        List<String> fields = Arrays.stream(searchIndex.columns()).map(aggregations::field).collect(toList());
+        Query query = new Query();
+        query.fields().include(fields.toArray(new String[0]));
+
+        long count = 0;
+        BulkOperations bulk = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, collectionName);
+        try (Stream<Document> documents = mongoOperations.stream(query, Document.class, collectionName)) {
+            Iterator<Document> iterator = documents.iterator();
+            while (iterator.hasNext()) {
+                Document document = iterator.next();
+                bulk.updateOne(Query.query(Criteria.where("_id").is(document.get("_id"))),
+                        Update.update(searchIndex.field(), SearchTokens.ofDocument(document, fields, searchIndex.gramLength())));
+                if (++count % PartitionedExport.CHUNK_SIZE == 0) {
+                    bulk.execute();
+                    bulk = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, collectionName);
+                }
+            }
+        }
+        if (count % PartitionedExport.CHUNK_SIZE != 0) {
+            bulk.execute();
+        }
+        // last, since its existence tells that the tokens of all the records are written (see hasSearchIndex)
+        mongoOperations.indexOps(collectionName).createIndex(new Index(searchIndex.field(), Sort.Direction.ASC));
+        // the new records are indexed by the listener, if any
+        searchIndexReady = searchIndexListener;
+        evictPageCache();
+        return count;
+    }
+
+    @Override
+    public DataTablesSubscription subscribe(DataTablesInput input, Consumer<DataTablesDelta<T>> listener) {
+        return subscribe(input, emptyList(), emptyList(), Function.identity(), listener);
+    }
+
+    @Override
+    public <R> DataTablesSubscription subscribe(DataTablesInput input, Function<T, R> converter, Consumer<DataTablesDelta<R>> listener) {
+        return subscribe(input, emptyList(), emptyList(), converter, listener);
+    }
+
+    @Override
+    public DataTablesSubscription subscribe(DataTablesInput input, Collection<Criteria> additionalCriteria,
+                                            Collection<Criteria> preFilteringCriteria, Consumer<DataTablesDelta<T>> listener) {
+        return subscribe(input, additionalCriteria, preFilteringCriteria, Function.identity(), listener);
+    }
+
+    @Override
+    public <R> DataTablesSubscription subscribe(DataTablesInput input, Collection<Criteria> additionalCriteria,
+                                                Collection<Criteria> preFilteringCriteria, Function<T, R> converter,
+                                                Consumer<DataTablesDelta<R>> listener) {
+        DataTablesCriteria criteria = new DataTablesCriteria(input, preFilteringCriteria, additionalCriteria, getCollation(additionalCriteria, preFilteringCriteria), hints, getSearchIndex());
+        Query query = criteria.toQuery();
+        Document filter = aggregations.filter(query);
+
+        List<Document> pagePipeline = new ArrayList<>();
+        pagePipeline.add(new Document("$match", filter));
+        Document sort = aggregations.sort(query);
+        if (sort != null) {
+            pagePipeline.add(sort);
+        }
+        if (query.getSkip() > 0) {
+            pagePipeline.add(new Document("$skip", query.getSkip()));
+        }
+        if (query.isLimited()) {
+            pagePipeline.add(new Document("$limit", query.getLimit()));
+        }
+        pagePipeline.add(new Document("$project", new Document("_id", 1)));
+        Set<Object> pageIds = aggregations.aggregate(pagePipeline, query, pageReadPreference).stream()
+                .map(document -> document.get("_id"))
+                .collect(toCollection(HashSet::new));
+
+        // the changes of the records matching the filter, and the changes of the records of the page (which may leave it)
+        List<Document> changePipeline = singletonList(new Document("$match", new Document("$or", asList(
+                new Document("$and", asList(
+                        new Document("operationType", new Document("$in", asList("insert", "update", "replace"))),
+                        Aggregations.prefix(filter, "fullDocument."))),
+                new Document("operationType", new Document("$in", asList("update", "replace", "delete")))
+                        .append("documentKey._id", new Document("$in", new ArrayList<>(pageIds)))
+        ))));
+
+        return new DataTablesSubscription(changeStreamSource.open(changePipeline, query, null),
+                resumeToken -> changeStreamSource.open(changePipeline, query, resumeToken), changes -> {
+            List<Object> ids = new ArrayList<>(changes.size());
+            List<Object> updatedIds = new ArrayList<>();
+            for (ChangeStreamDocument<Document> change : changes) {
+                Object id = new DocumentCodec()
+                        .decode(new BsonDocumentReader(change.getDocumentKey()), DecoderContext.builder().build())
+                        .get("_id");
+                ids.add(id);
+                if (change.getFullDocument() != null && change.getOperationType() != OperationType.INSERT) {
+                    updatedIds.add(id);
+                }
+            }
+            // the looked up documents may have been deleted or updated since, and the events do not tell which
+            // branch of the $or matched: the updated records still matching the filter are found with a single query
+            Set<Object> matchingIds = matching(filter, updatedIds, query);
+            for (int i = 0; i < changes.size(); i++) {
+                Object id = ids.get(i);
+                DataTablesDelta<R> delta = toDelta(changes.get(i), id, pageIds.contains(id), matchingIds.contains(id), converter);
+                if (delta != null) {
+                    listener.accept(delta);
+                }
+            }
+        }, () -> listener.accept(new DataTablesDelta<>(DataTablesDelta.Type.RESET, null, null)));
+    }
+
+    /**
+     * Opens the change stream of the collection, with the given pipeline and the collation of the given query, after
+     * the given resume token if any.
+     */
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> watch(List<Document> pipeline, Query query, BsonDocument resumeToken) {
+        return mongoOperations.execute(metadata.getCollectionName(), collection -> {
+            ChangeStreamIterable<Document> changeStream = collection.watch(pipeline).fullDocument(FullDocument.UPDATE_LOOKUP);
+            if (query.getCollation().isPresent()) {
+                changeStream = changeStream.collation(query.getCollation().get().toMongoCollation());
+            }
+            if (resumeToken != null) {
+                changeStream = changeStream.resumeAfter(resumeToken);
+            }
+            return changeStream.cursor();
+        });
+    }
+
+    @FunctionalInterface
+    interface ChangeStreamSource {
+
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> open(List<Document> pipeline, Query query, BsonDocument resumeToken);
+    }
+
+    /**
+     * Returns the {@link DataTablesDelta} matching the given change, or {@code null} if it is not relevant to the page.
+     */
+    private <R> DataTablesDelta<R> toDelta(ChangeStreamDocument<Document> change, Object id, boolean onPage, boolean matching,
+                                           Function<T, R> converter) {
+        Object entityId = mongoOperations.getConverter().getConversionService().convert(id, metadata.getIdType());
+        Document fullDocument = change.getFullDocument();
+        switch (change.getOperationType()) {
+            case INSERT:
+                return new DataTablesDelta<>(DataTablesDelta.Type.INSERTED, entityId, converter.apply(read(fullDocument)));
+            case UPDATE:
+            case REPLACE:
+                if (fullDocument != null && matching) {
+                    return new DataTablesDelta<>(onPage ? DataTablesDelta.Type.UPDATED : DataTablesDelta.Type.INSERTED,
+                            entityId, converter.apply(read(fullDocument)));
+                }
+                return onPage ? new DataTablesDelta<>(DataTablesDelta.Type.REMOVED, entityId, null) : null;
+            case DELETE:
+                return new DataTablesDelta<>(DataTablesDelta.Type.REMOVED, entityId, null);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the given {@code _id} values whose records match the given filter.
+     */
+    private Set<Object> matching(Document filter, Collection<Object> ids, Query query) {
+        if (ids.isEmpty()) {
+            return emptySet();
+        }
+        Document idFilter = new Document("$and", asList(filter, new Document("_id", new Document("$in", ids))));
+        return mongoOperations.execute(metadata.getCollectionName(), collection -> {
+            FindIterable<Document> documents = collection.find(idFilter).projection(new Document("_id", 1));
+            if (query.getCollation().isPresent()) {
+                documents = documents.collation(query.getCollation().get().toMongoCollation());
+            }
+            return documents.map(document -> document.get("_id")).into(new HashSet<>());
+        });
+    }
+
+    private T read(Document document) {
+        return mongoOperations.getConverter().read(metadata.getJavaType(), document);
+    }
+
+    /**
+     * Returns the collation of the repository, unless the given criteria compare strings and the repository did not
+     * opt in with {@link DataTablesCollation#collateCriteria()}: since a collation applies to the whole query, their
+     * equalities would become case-insensitive too.
+     */
+    private Collation getCollation(Collection<Criteria> additionalCriteria, Collection<Criteria> preFilteringCriteria) {
+        if (collation == null || collateCriteria) {
+            return collation;
+        }
+        return DataTablesCriteria.comparesStrings(additionalCriteria) || DataTablesCriteria.comparesStrings(preFilteringCriteria) ? null : collation;
+    }
+
+    /**
+     * Counts the pre-filtered records, with the given collation of the filtered count if any (so that it cannot count
+     * fewer records), but without the hint (which was chosen for the search and the order) of the filtered queries.
+     */
+    private long count(Collection<Criteria> preFilteringCriteria, Collation collation) {
+        if (preFilteringCriteria == null || preFilteringCriteria.isEmpty() || preFilteringCriteria.stream().allMatch(Objects::isNull)) {
+            if (countReadPreference != null) {
+                return mongoOperations.execute(metadata.getCollectionName(),
+                        collection -> collection.withReadPreference(countReadPreference).estimatedDocumentCount());
+            }
+            return mongoOperations.estimatedCount(metadata.getCollectionName());
+        } else {
+            Query preFilteringQuery = toQuery(preFilteringCriteria);
+            if (collation != null) {
+                preFilteringQuery.collation(collation);
+            }
+            // the counters are kept by exact partition
+            if (counters != null && collation == null) {
+                Long count = counters.count(aggregations.filter(preFilteringQuery), countReadPreference);
+                if (count != null) {
+                    return count;
+                }
+            }
+            return mongoOperations.count(withReadPreference(preFilteringQuery, countReadPreference), metadata.getCollectionName());
+        }
+    }
+
+    private static Query toQuery(Collection<Criteria> criteria) {
+        Query query = new Query();
+        if (criteria != null) {
+            criteria.stream().filter(Objects::nonNull).forEach(query::addCriteria);
+        }
+        return query;
+    }
+
+    private static Query withReadPreference(Query query, ReadPreference readPreference) {
+        return readPreference == null ? query : query.withReadPreference(readPreference);
+    }
+
 }
@@ -0,0 +1,64 @@
+package org.springframework.data.mongodb.datatables;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registers the hints needed by the DataTables repositories in a native image (or with AOT-optimized startup):
+ * <ul>
+ * <li>the repository implementation, which is instantiated reflectively by the {@link DataTablesRepositoryFactoryBean}
+ * and whose methods are invoked reflectively by the repository proxy</li>
+ * <li>the configuration annotations, read from the repository interfaces and the entities</li>
+ * <li>the request and response types, bound from the query parameters and serialized by Jackson</li>
+ * </ul>
+ * It is registered in {@code META-INF/spring/aot.factories}.
+ */
+class DataTablesRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final List<Class<?>> ANNOTATIONS = Arrays.asList(
+            DataTablesBulkhead.class,
+            DataTablesCollation.class,
+            DataTablesCounters.class,
+            DataTablesHint.class,
+            DataTablesHint.List.class,
+            DataTablesMaxLength.class,
+            DataTablesPageCache.class,
+            DataTablesPlanGuard.class,
+            DataTablesPrefetch.class,
+            DataTablesReadPreference.class,
+            DataTablesSearchIndex.class
+    );
+
+    private static final List<Class<?>> BOUND_TYPES = Arrays.asList(
+            DataTablesInput.class,
+            DataTablesOutput.class,
+            DataTablesDelta.class,
+            DataTablesGroup.class,
+            DataTablesPrefetchStats.class
+    );
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.reflection().registerType(DataTablesRepositoryImpl.class,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.reflection().registerType(DataTablesRepository.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        for (Class<?> annotation : ANNOTATIONS) {
+            hints.reflection().registerType(annotation, MemberCategory.INVOKE_DECLARED_METHODS);
+        }
+
+        // the nested types (columns, orders, facet buckets...) are registered along with their enclosing type
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), BOUND_TYPES.toArray(new Class<?>[0]));
+        hints.reflection().registerType(DataTablesOutput.View.class);
+        hints.reflection().registerType(DataTablesOutputSerializer.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+        // by name, since Jackson 3 is optional
+        hints.reflection().registerType(TypeReference.of("org.springframework.data.mongodb.datatables.DataTablesOutputJackson3Serializer"),
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+    }
+}
@@ -0,0 +1,55 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maintains a field holding the normalized tokens (lowercase, without accents) of the given columns of an entity, so
+ * that the global search of a {@link DataTablesRepository} is a single {@code $all} query on that field, served by a
+ * multikey index, instead of an {@code $or} of one query per column.
+ * <p>
+ * Each word is indexed with all its substrings of up to {@link #gramLength()} characters, so that the search matches
+ * the records containing every searched word, anywhere in the declared columns. This changes the meaning of the
+ * {@link DataTablesInput.Search.SearchMode#PREFIX PREFIX} search, which otherwise only matches the values starting
+ * with the searched text. Besides, a searched word longer than {@link #gramLength()} is matched with its substrings of
+ * this length, which may belong to different words of the record: "papa" also matches "paper tapas". The
+ * {@link DataTablesInput.Search.SearchMode#REGEX REGEX} and
+ * {@link DataTablesInput.Search.SearchMode#EXACT_MATCH EXACT_MATCH} searches, and the searches over columns which
+ * are not declared (or over no column at all), are still expressed as an {@code $or}.
+ * <p>
+ * The field is written by the {@link DataTablesSearchIndexListener}, which must be declared as a bean, and can be
+ * rebuilt for the existing records with {@link DataTablesRepository#rebuildSearchIndex()}, which also creates the
+ * index. Until both are in place, the tokens are ignored and the global search is expressed as an {@code $or}.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;Document
+ * &#64;DataTablesSearchIndex(columns = {"firstName", "lastName", "address.town"})
+ * public class User {}
+ * </pre>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DataTablesSearchIndex {
+
+    /**
+     * The data of the indexed columns.
+     */
+    String[] columns();
+
+    /**
+     * The name of the field holding the tokens.
+     */
+    String field() default "_searchTokens";
+
+    /**
+     * The maximum length of the indexed substrings. A searched word longer than this is matched with all its
+     * substrings of this length.
+     */
+    int gramLength() default 3;
+
+}
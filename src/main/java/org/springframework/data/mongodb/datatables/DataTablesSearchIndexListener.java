@@ -0,0 +1,76 @@
+package org.springframework.data.mongodb.datatables;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.springframework.core.annotation.AnnotatedElementUtils.findMergedAnnotation;
+
+/**
+ * Writes the tokens of the entities annotated with {@link DataTablesSearchIndex} when they are saved.
+ * <p>
+ * Only the entities saved as a whole (for example with {@code save} or {@code insert}) are handled, the records
+ * modified with an update query must be reindexed with {@link DataTablesRepository#rebuildSearchIndex()}.
+ * <p>
+ * Example:
+ * <pre>
+ * &#64;Bean
+ * public DataTablesSearchIndexListener dataTablesSearchIndexListener(MongoConverter converter) {
+ *     return new DataTablesSearchIndexListener(converter);
+ * }
+ * </pre>
+ */
+public class DataTablesSearchIndexListener extends AbstractMongoEventListener<Object> {
+
+    private final MongoConverter converter;
+    private final QueryMapper queryMapper;
+    private final ConcurrentMap<Class<?>, Optional<SearchIndex>> searchIndexes = new ConcurrentHashMap<>();
+
+    public DataTablesSearchIndexListener(MongoConverter converter) {
+        this.converter = converter;
+        this.queryMapper = new QueryMapper(converter);
+    }
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<Object> event) {
+        Document document = event.getDocument();
+        if (document == null) {
+            return;
+        }
+        searchIndexes.computeIfAbsent(event.getSource().getClass(), this::getSearchIndex).ifPresent(searchIndex ->
+                document.put(searchIndex.annotation.field(),
+                        SearchTokens.ofDocument(document, searchIndex.fields, searchIndex.annotation.gramLength())));
+    }
+
+    private Optional<SearchIndex> getSearchIndex(Class<?> type) {
+        DataTablesSearchIndex annotation = findMergedAnnotation(type, DataTablesSearchIndex.class);
+        if (annotation == null) {
+            return Optional.empty();
+        }
+        List<String> fields = new ArrayList<>();
+        for (String column : annotation.columns()) {
+            fields.add(queryMapper.getMappedFields(new Document(column, 1), converter.getMappingContext().getPersistentEntity(type))
+                    .keySet().iterator().next());
+        }
+        return Optional.of(new SearchIndex(annotation, fields));
+    }
+
+    private static final class SearchIndex {
+
+        private final DataTablesSearchIndex annotation;
+        private final List<String> fields;
+
+        private SearchIndex(DataTablesSearchIndex annotation, List<String> fields) {
+            this.annotation = annotation;
+            this.fields = fields;
+        }
+    }
+}
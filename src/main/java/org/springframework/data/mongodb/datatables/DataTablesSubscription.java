@@ -0,0 +1,149 @@
+package org.springframework.data.mongodb.datatables;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bson.BsonDocument;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A subscription to the changes of a page of a DataTable, see
+ * {@link DataTablesRepository#subscribe(DataTablesInput, Consumer)}. The changes are watched on a virtual thread, until
+ * the subscription is closed.
+ * <p>
+ * The changes already received when one is read (up to {@link #MAX_BATCH_SIZE}) are handled together, so that a burst
+ * of changes does not cost a query per change.
+ * <p>
+ * After a failure (a network error, a primary election...), the change stream is resumed after the last seen change,
+ * with an exponential backoff. If it cannot be resumed (the change is not in the oplog anymore, for example), a
+ * {@link DataTablesDelta.Type#RESET} is notified and the subscription is closed.
+ */
+public final class DataTablesSubscription implements AutoCloseable {
+
+    private static final Log logger = LogFactory.getLog(DataTablesSubscription.class);
+
+    static final int MAX_BATCH_SIZE = 100;
+
+    private static final long MIN_RESUME_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_RESUME_BACKOFF_MILLIS = 60_000;
+
+    private final Thread thread;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private volatile boolean closed;
+
+    /**
+     * @param cursor   the change stream, already opened
+     * @param resume   opens the change stream again, after the given resume token
+     * @param listener receives the changes
+     * @param reset    notified if the change stream cannot be resumed, before the subscription is closed
+     */
+    DataTablesSubscription(MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor,
+                           Function<BsonDocument, MongoChangeStreamCursor<ChangeStreamDocument<Document>>> resume,
+                           Consumer<List<ChangeStreamDocument<Document>>> listener, Runnable reset) {
+        this.cursor = cursor;
+        this.thread = Thread.ofVirtual().name("datatables-subscription").start(() -> {
+            try {
+                watch(resume, listener, reset);
+            } finally {
+                close();
+            }
+        });
+    }
+
+    private void watch(Function<BsonDocument, MongoChangeStreamCursor<ChangeStreamDocument<Document>>> resume,
+                       Consumer<List<ChangeStreamDocument<Document>>> listener, Runnable reset) {
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = this.cursor;
+        BsonDocument resumeToken = cursor.getResumeToken();
+        long backoffMillis = MIN_RESUME_BACKOFF_MILLIS;
+        while (!closed) {
+            try {
+                while (!closed && cursor.hasNext()) {
+                    List<ChangeStreamDocument<Document>> changes = new ArrayList<>();
+                    changes.add(cursor.next());
+                    while (changes.size() < MAX_BATCH_SIZE && cursor.available() > 0) {
+                        changes.add(cursor.next());
+                    }
+                    resumeToken = cursor.getResumeToken();
+                    backoffMillis = MIN_RESUME_BACKOFF_MILLIS;
+                    try {
+                        listener.accept(changes);
+                    } catch (RuntimeException e) {
+                        logger.warn("Unable to notify " + changes.size() + " change(s)", e);
+                    }
+                }
+                if (!closed) {
+                    // the change stream was invalidated, the collection being dropped or renamed
+                    notifyReset(reset, null);
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                logger.warn("The subscription was interrupted, resuming in " + backoffMillis + " ms", e);
+            }
+            cursor.close();
+
+            while (!closed) {
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, MAX_RESUME_BACKOFF_MILLIS);
+                if (resumeToken == null) {
+                    notifyReset(reset, null);
+                    return;
+                }
+                try {
+                    cursor = resume.apply(resumeToken);
+                    this.cursor = cursor;
+                    if (closed) {
+                        cursor.close();
+                    }
+                    break;
+                } catch (MongoServerException e) {
+                    // the server refused to resume after the token, which may have expired from the oplog
+                    notifyReset(reset, e);
+                    return;
+                } catch (RuntimeException e) {
+                    logger.warn("Unable to resume the subscription, retrying in " + backoffMillis + " ms", e);
+                }
+            }
+        }
+    }
+
+    private void notifyReset(Runnable reset, Exception cause) {
+        logger.warn("The subscription cannot be resumed, and is closed", cause);
+        try {
+            reset.run();
+        } catch (RuntimeException e) {
+            logger.warn("Unable to notify the reset of the subscription", e);
+        }
+    }
+
+    /**
+     * Returns {@code true} once the subscription is closed, either explicitly or because the change stream could not
+     * be resumed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            cursor.close();
+            // waiting to resume
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Counts computed in the background for the {@link DataTablesInput#isCountingRecordsDeferred() deferred counting}
+ * mode, and retrieved later with their token.
+ * <p>
+ * The counts of a given filter are computed once for all its pages, as long as they are kept: the
+ * {@link #MAXIMUM_SIZE} most recent ones are kept for {@link #TIME_TO_LIVE_MILLIS}. Failed counts (including the
+ * rejections by the bulkhead) are only returned for their token, the next requests computing them again.
+ */
+final class DeferredCounts {
+
+    static final int MAXIMUM_SIZE = 1000;
+    static final long TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Map<DataTablesKey, Entry> entriesByKey = new HashMap<>();
+    private final LinkedHashMap<String, Entry> entriesByToken = new LinkedHashMap<>();
+
+    /**
+     * Returns the token of the counts of the given filter, submitting the given count to the executor if they are not
+     * known yet.
+     *
+     * @param key   the key of the filter, independent of the paging and of the order
+     * @param count the count, returning a {@link DataTablesOutput} with the counts or an error
+     */
+    String submit(DataTablesKey key, Supplier<DataTablesOutput<?>> count, Executor executor) {
+        Entry entry;
+        synchronized (this) {
+            evictExpired();
+            entry = entriesByKey.get(key);
+            if (entry != null) {
+                return entry.token;
+            }
+            entry = new Entry(key, UUID.randomUUID().toString(), System.currentTimeMillis() + TIME_TO_LIVE_MILLIS);
+            entriesByKey.put(key, entry);
+            entriesByToken.put(entry.token, entry);
+
+            Iterator<Entry> iterator = entriesByToken.values().iterator();
+            while (entriesByToken.size() > MAXIMUM_SIZE && iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                entriesByKey.remove(eldest.key, eldest);
+                iterator.remove();
+            }
+        }
+
+        Entry submitted = entry;
+        executor.execute(() -> {
+            DataTablesOutput<?> counts;
+            try {
+                counts = count.get();
+            } catch (RuntimeException | Error e) {
+                forget(submitted);
+                submitted.counts.completeExceptionally(e);
+                return;
+            }
+            if (counts.getError() != null) {
+                forget(submitted);
+            }
+            submitted.counts.complete(counts);
+        });
+        return entry.token;
+    }
+
+    /**
+     * Removes the given entry from the counts shared by the requests, while keeping it for its token.
+     */
+    private synchronized void forget(Entry entry) {
+        entriesByKey.remove(entry.key, entry);
+    }
+
+    /**
+     * Returns the counts of the given token, waiting for them up to the given timeout, or {@code null} if they are
+     * still being computed.
+     *
+     * @throws IllegalArgumentException if the token is unknown or expired
+     */
+    DataTablesOutput<?> get(String token, Duration timeout) throws InterruptedException {
+        Entry entry;
+        synchronized (this) {
+            evictExpired();
+            entry = entriesByToken.get(token);
+        }
+        if (entry == null) {
+            throw new IllegalArgumentException("Unknown or expired count token " + token);
+        }
+
+        try {
+            return entry.counts.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (ExecutionException e) {
+            DataTablesOutput<?> output = new DataTablesOutput<>();
+            output.setError(e.getCause().toString());
+            return output;
+        }
+    }
+
+    /**
+     * Makes the next requests compute their counts again, the tokens already returned still being resolved.
+     */
+    synchronized void evictAll() {
+        entriesByKey.clear();
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = entriesByToken.values().iterator();
+        // the entries are ordered by expiration
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expiresAt >= now) {
+                break;
+            }
+            entriesByKey.remove(entry.key, entry);
+            iterator.remove();
+        }
+    }
+
+    private static final class Entry {
+
+        private final DataTablesKey key;
+        private final String token;
+        private final long expiresAt;
+        private final CompletableFuture<DataTablesOutput<?>> counts = new CompletableFuture<>();
+
+        private Entry(DataTablesKey key, String token, long expiresAt) {
+            this.key = key;
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
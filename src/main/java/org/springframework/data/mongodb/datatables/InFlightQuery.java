@@ -0,0 +1,52 @@
+package org.springframework.data.mongodb.datatables;
+
+import org.bson.Document;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A page query being executed, whose result is shared with the identical requests joining it in the meantime.
+ * <p>
+ * The result is shared as a snapshot of the records (their BSON documents), which each joining request reads into its
+ * own instances. The snapshot is only taken if a request joined the query.
+ */
+final class InFlightQuery {
+
+    private final CompletableFuture<DataTablesOutput<Document>> result = new CompletableFuture<>();
+    private int joined;
+    private boolean finished;
+
+    /**
+     * Joins the query, unless it is already finished, in which case its result may not be shared.
+     *
+     * @return whether the query was joined
+     */
+    synchronized boolean join() {
+        if (finished) {
+            return false;
+        }
+        joined++;
+        return true;
+    }
+
+    /**
+     * Marks the query as finished: no request can join it anymore.
+     *
+     * @return whether some requests joined it, and thus wait for its {@link #complete(DataTablesOutput) snapshot}
+     */
+    synchronized boolean finish() {
+        finished = true;
+        return joined > 0;
+    }
+
+    /**
+     * Shares the snapshot of the result, or {@code null} if the query failed.
+     */
+    void complete(DataTablesOutput<Document> snapshot) {
+        result.complete(snapshot);
+    }
+
+    CompletableFuture<DataTablesOutput<Document>> getResult() {
+        return result;
+    }
+}
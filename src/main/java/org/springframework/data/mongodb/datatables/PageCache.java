@@ -0,0 +1,129 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of {@link DataTablesOutput}, weighted by their number of rows and evicted in least recently used
+ * order.
+ * <p>
+ * A key can also be {@link #reserve(DataTablesKey) reserved} for a page being fetched, which is then only kept if the
+ * reservation is still there once it is fetched.
+ */
+final class PageCache<T> {
+
+    private final long maximumWeight;
+    private final long timeToLiveMillis;
+
+    private final LinkedHashMap<DataTablesKey, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    PageCache(long maximumWeight, long timeToLiveMillis) {
+        this.maximumWeight = maximumWeight;
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    /**
+     * Returns the given page, or {@code null} if it is not cached (or only reserved).
+     */
+    synchronized DataTablesOutput<T> get(DataTablesKey key) {
+        return contains(key) ? entries.get(key).page : null;
+    }
+
+    /**
+     * Returns the given page and removes it (or its reservation) from the cache.
+     */
+    synchronized DataTablesOutput<T> take(DataTablesKey key) {
+        DataTablesOutput<T> page = get(key);
+        remove(key);
+        return page;
+    }
+
+    /**
+     * Returns whether the given page is cached or reserved.
+     */
+    synchronized boolean contains(DataTablesKey key) {
+        Entry<T> entry = entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reserves the given key for a page being fetched, see {@link #fill(DataTablesKey, DataTablesOutput)}.
+     *
+     * @return {@code false} if the page is already cached or reserved
+     */
+    synchronized boolean reserve(DataTablesKey key) {
+        if (contains(key)) {
+            return false;
+        }
+        add(key, null, 1);
+        return true;
+    }
+
+    /**
+     * Puts the given page, if its key is still reserved (that is, neither taken nor evicted since it was reserved).
+     *
+     * @return whether the page was put
+     */
+    synchronized boolean fill(DataTablesKey key, DataTablesOutput<T> page) {
+        Entry<T> entry = entries.get(key);
+        if (entry == null || entry.page != null) {
+            return false;
+        }
+        put(key, page);
+        return entries.containsKey(key);
+    }
+
+    synchronized void put(DataTablesKey key, DataTablesOutput<T> page) {
+        long pageWeight = page.getData().size() + 1;
+        if (pageWeight > maximumWeight) {
+            remove(key);
+            return;
+        }
+        add(key, page, pageWeight);
+    }
+
+    private void add(DataTablesKey key, DataTablesOutput<T> page, long pageWeight) {
+        remove(key);
+        entries.put(key, new Entry<>(page, pageWeight, System.currentTimeMillis() + timeToLiveMillis));
+        weight += pageWeight;
+
+        Iterator<Map.Entry<DataTablesKey, Entry<T>>> iterator = entries.entrySet().iterator();
+        while (weight > maximumWeight && iterator.hasNext()) {
+            weight -= iterator.next().getValue().weight;
+            iterator.remove();
+        }
+    }
+
+    synchronized void evictAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    private void remove(DataTablesKey key) {
+        Entry<T> entry = entries.remove(key);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    private static final class Entry<T> {
+        private final DataTablesOutput<T> page;
+        private final long weight;
+        private final long expiresAt;
+
+        Entry(DataTablesOutput<T> page, long weight, long expiresAt) {
+            this.page = page;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
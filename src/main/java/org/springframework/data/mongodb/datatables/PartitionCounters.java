@@ -0,0 +1,141 @@
+package org.springframework.data.mongodb.datatables;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The counters of a {@link DataTablesCounters} annotation. Each counter is a document whose {@code _id} holds the
+ * values of the partition fields, for example {@code { _id: { tenantId: "acme" }, count: 1234 }}.
+ */
+final class PartitionCounters {
+
+    private final MongoOperations mongoOperations;
+    private final String collectionName;
+    private final String counterCollectionName;
+    private final List<String> fields;
+
+    PartitionCounters(DataTablesCounters configuration, MongoOperations mongoOperations, Aggregations aggregations, String collectionName) {
+        this.mongoOperations = mongoOperations;
+        this.collectionName = collectionName;
+        this.counterCollectionName = configuration.collection().isEmpty() ? collectionName + "_counters" : configuration.collection();
+        this.fields = Arrays.stream(configuration.fields()).map(aggregations::field).collect(toList());
+    }
+
+    /**
+     * Returns the partition of the given entity.
+     */
+    Document keyOf(Object entity) {
+        Document document = new Document();
+        mongoOperations.getConverter().write(entity, document);
+        Document key = new Document();
+        for (String field : fields) {
+            // like in the $group stage of reconcile(), a missing value is omitted
+            if (document.get(field) != null) {
+                key.put(field, document.get(field));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Returns the names of the fields defining a partition.
+     */
+    List<String> getFields() {
+        return fields;
+    }
+
+    void increment(Document key, long delta) {
+        increment(singletonMap(key, delta));
+    }
+
+    /**
+     * Applies the given deltas, indexed by partition, with a single bulk write.
+     */
+    void increment(Map<Document, Long> deltas) {
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        deltas.forEach((key, delta) -> {
+            if (delta != 0) {
+                updates.add(new UpdateOneModel<>(new Document("_id", key), new Document("$inc", new Document("count", delta)),
+                        new UpdateOptions().upsert(true)));
+            }
+        });
+        if (!updates.isEmpty()) {
+            mongoOperations.execute(counterCollectionName, collection -> collection.bulkWrite(updates, new BulkWriteOptions().ordered(false)));
+        }
+    }
+
+    void clear() {
+        mongoOperations.execute(counterCollectionName, collection -> collection.deleteMany(new Document()));
+    }
+
+    /**
+     * Returns the number of records matching the given filter, if it is an equality on exactly the partition fields
+     * and the counter of this partition exists, and {@code null} otherwise.
+     */
+    Long count(Document filter, ReadPreference readPreference) {
+        if (filter.size() != fields.size() || !filter.keySet().containsAll(fields)) {
+            return null;
+        }
+        Document key = new Document();
+        for (String field : fields) {
+            Object value = filter.get(field);
+            if (value == null || value instanceof Map || value instanceof Collection || value instanceof Pattern) {
+                return null;
+            }
+            key.put(field, value);
+        }
+
+        Document counter = mongoOperations.execute(counterCollectionName, collection ->
+                (readPreference == null ? collection : collection.withReadPreference(readPreference)).find(new Document("_id", key)).first());
+        return counter == null ? null : ((Number) counter.get("count")).longValue();
+    }
+
+    /**
+     * Recounts the records of every partition, and corrects the counters.
+     * <p>
+     * The counters are corrected with {@code $inc}, by the difference between the count and the value read right after
+     * counting, so that the increments made in the meantime by the repository are kept, and the counters which reach
+     * zero are then removed. The records written between the count and this read may still be miscounted, until the
+     * next reconciliation.
+     *
+     * @return the number of partitions
+     */
+    long reconcile() {
+        Document id = new Document();
+        fields.forEach(field -> id.put(field, "$" + field));
+        List<Document> partitions = mongoOperations.execute(collectionName, collection -> collection
+                .aggregate(singletonList(new Document("$group", new Document("_id", id).append("count", new Document("$sum", 1)))))
+                .allowDiskUse(true)
+                .into(new ArrayList<>()));
+
+        Map<Document, Long> deltas = new HashMap<>();
+        for (Document partition : partitions) {
+            deltas.put(partition.get("_id", Document.class), ((Number) partition.get("count")).longValue());
+        }
+        for (Document counter : mongoOperations.execute(counterCollectionName, collection -> collection.find().into(new ArrayList<>()))) {
+            deltas.merge(counter.get("_id", Document.class), -((Number) counter.get("count")).longValue(), Long::sum);
+        }
+        increment(deltas);
+
+        // a missing counter is counted on the collection, like an empty partition
+        mongoOperations.execute(counterCollectionName, collection -> collection.deleteMany(new Document("count", 0)));
+        return partitions.size();
+    }
+}
@@ -0,0 +1,295 @@
+package org.springframework.data.mongodb.datatables;
+
+import com.mongodb.ReadPreference;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.reverse;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Scans every record matching a {@link DataTablesCriteria}, splitting the collection into {@code _id} ranges that are
+ * read concurrently, each on its own virtual thread (and thus its own pooled connection).
+ * <p>
+ * The split points are picked with {@code $sample}, so the ranges are roughly balanced without requiring any
+ * knowledge of the {@code _id} distribution. Each range converts its documents in chunks, which are then handed to
+ * the consumer in {@code _id} order. A query sorted by anything else than {@code _id} is scanned sequentially.
+ * <p>
+ * The ranges are started on demand, up to {@code parallelism} ranges ahead of the one being consumed. Since a range
+ * waits for the consumer once it has buffered {@link #BUFFERED_CHUNKS} chunks, each chunk is read with its own query
+ * (resumed after the last {@code _id} of the previous chunk), so that no cursor is left open, and possibly timed out by
+ * the server, while waiting.
+ * <p>
+ * Since the {@code $gte} and {@code $lt} operators only match values of the same BSON type as their bound, the split
+ * points all have the same type, and the first and last ranges also contain the {@code _id} of the types sorted
+ * before and after it, so that no record is left out when the collection mixes several {@code _id} types.
+ * <p>
+ * The samples and the records are read with the read preference of the pages of the repository, if any.
+ */
+final class PartitionedExport<T, R> {
+
+    static final int CHUNK_SIZE = 1000;
+
+    /**
+     * Number of sampled {@code _id} per range, in order to smooth the split points.
+     */
+    private static final int SAMPLES_PER_RANGE = 16;
+
+    /**
+     * Number of chunks a range may buffer before waiting for the consumer.
+     */
+    private static final int BUFFERED_CHUNKS = 4;
+
+    private static final List<Object> END_OF_RANGE = new ArrayList<>();
+
+    /**
+     * The BSON types, grouped by the rank of their values in the comparison order of MongoDB.
+     */
+    private static final List<List<String>> TYPE_ORDER = asList(
+            asList("minKey"),
+            asList("null", "undefined"),
+            asList("int", "long", "double", "decimal"),
+            asList("symbol", "string"),
+            asList("object"),
+            asList("array"),
+            asList("binData"),
+            asList("objectId"),
+            asList("bool"),
+            asList("date"),
+            asList("timestamp"),
+            asList("regex"),
+            asList("maxKey")
+    );
+
+    private final MongoEntityInformation<T, ?> metadata;
+    private final MongoOperations mongoOperations;
+    private final Aggregations aggregations;
+    private final ReadPreference readPreference;
+    private final Function<T, R> converter;
+
+    PartitionedExport(MongoEntityInformation<T, ?> metadata, MongoOperations mongoOperations, Aggregations aggregations,
+                      ReadPreference readPreference, Function<T, R> converter) {
+        this.metadata = metadata;
+        this.mongoOperations = mongoOperations;
+        this.aggregations = aggregations;
+        this.readPreference = readPreference;
+        this.converter = converter;
+    }
+
+    void export(Query query, int parallelism, Consumer<List<R>> consumer) {
+        Document sortObject = query.getSortObject();
+        if (parallelism < 2 || !isSortedById(sortObject)) {
+            scan(query, consumer);
+            return;
+        }
+
+        List<Document> samples = getSamples(parallelism);
+        int typeRank = getMostFrequentTypeRank(samples);
+        List<Object> splitPoints = getSplitPoints(samples, typeRank);
+        if (splitPoints.isEmpty()) {
+            scan(query, consumer);
+            return;
+        }
+
+        List<String> typesBefore = new ArrayList<>();
+        TYPE_ORDER.subList(0, typeRank).forEach(typesBefore::addAll);
+        List<String> typesUpTo = new ArrayList<>(typesBefore);
+        typesUpTo.addAll(TYPE_ORDER.get(typeRank));
+
+        List<Query> ranges = new ArrayList<>(splitPoints.size() + 1);
+        for (int i = 0; i <= splitPoints.size(); i++) {
+            Document range = new Document();
+            if (i > 0) {
+                range.append("$gte", splitPoints.get(i - 1));
+            }
+            if (i < splitPoints.size()) {
+                range.append("$lt", splitPoints.get(i));
+            }
+            Document bounds = new Document("_id", range);
+            if (i == 0 && !typesBefore.isEmpty()) {
+                bounds = new Document("$or", asList(bounds, new Document("_id", new Document("$type", typesBefore))));
+            } else if (i == splitPoints.size()) {
+                // also the types missing from TYPE_ORDER (javascript...), which must not be left out either
+                bounds = new Document("$or", asList(bounds, new Document("_id", new Document("$not", new Document("$type", typesUpTo)))));
+            }
+            ranges.add(toRangeQuery(query, bounds));
+        }
+        boolean descending = !sortObject.isEmpty() && ((Number) sortObject.values().iterator().next()).intValue() < 0;
+        if (descending) {
+            reverse(ranges);
+        }
+
+        List<BlockingQueue<List<R>>> queues = new ArrayList<>(ranges.size());
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (int i = 0; i < ranges.size(); i++) {
+                // the ranges just ahead of the consumer
+                while (queues.size() < ranges.size() && queues.size() < i + parallelism) {
+                    Query range = ranges.get(queues.size());
+                    BlockingQueue<List<R>> queue = new ArrayBlockingQueue<>(BUFFERED_CHUNKS);
+                    queues.add(queue);
+                    executor.execute(() -> scanRange(range, descending, queue, failure));
+                }
+                BlockingQueue<List<R>> queue = queues.get(i);
+                List<R> chunk;
+                while ((chunk = queue.take()) != (Object) END_OF_RANGE) {
+                    consumer.accept(chunk);
+                }
+                if (failure.get() != null) {
+                    throw failure.get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Export interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean isSortedById(Document sortObject) {
+        if (sortObject.isEmpty()) return true;
+        if (sortObject.size() > 1) return false;
+
+        String key = sortObject.keySet().iterator().next();
+        return "_id".equals(key) || key.equals(metadata.getIdAttribute());
+    }
+
+    private List<Document> getSamples(int parallelism) {
+        return aggregations.aggregate(asList(
+                new Document("$sample", new Document("size", parallelism * SAMPLES_PER_RANGE)),
+                new Document("$project", new Document("_id", 1).append("type", new Document("$type", "$_id"))),
+                new Document("$sort", new Document("_id", 1))
+        ), new Query(), readPreference);
+    }
+
+    /**
+     * Returns the index in {@link #TYPE_ORDER} of the most frequent type among the given samples.
+     */
+    private static int getMostFrequentTypeRank(List<Document> samples) {
+        return samples.stream()
+                .map(sample -> getTypeRank(sample.getString("type")))
+                .filter(rank -> rank >= 0)
+                .collect(groupingBy(identity(), counting()))
+                .entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(-1);
+    }
+
+    private static int getTypeRank(String type) {
+        for (int i = 0; i < TYPE_ORDER.size(); i++) {
+            if (TYPE_ORDER.get(i).contains(type)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns one in {@link #SAMPLES_PER_RANGE} of the given samples of the given type, in order.
+     */
+    private static List<Object> getSplitPoints(List<Document> samples, int typeRank) {
+        List<Object> splitPoints = new ArrayList<>();
+        if (typeRank < 0) {
+            return splitPoints;
+        }
+        List<Object> ids = samples.stream()
+                .filter(sample -> getTypeRank(sample.getString("type")) == typeRank)
+                .map(sample -> sample.get("_id"))
+                .collect(toList());
+        for (int i = SAMPLES_PER_RANGE; i < ids.size(); i += SAMPLES_PER_RANGE) {
+            Object splitPoint = ids.get(i);
+            if (splitPoints.isEmpty() || !splitPoints.get(splitPoints.size() - 1).equals(splitPoint)) {
+                splitPoints.add(splitPoint);
+            }
+        }
+        return splitPoints;
+    }
+
+    private Query toRangeQuery(Query query, Document bounds) {
+        BasicQuery basicQuery = new BasicQuery(new Document("$and", asList(query.getQueryObject(), bounds)));
+        // the chunks of a range are resumed in _id order
+        basicQuery.setSortObject(query.getSortObject().isEmpty() ? new Document("_id", 1) : query.getSortObject());
+        query.getCollation().ifPresent(basicQuery::collation);
+        if (query.getHint() != null) {
+            basicQuery.withHint(query.getHint());
+        }
+        return basicQuery;
+    }
+
+    private void scan(Query query, Consumer<List<R>> consumer) {
+        Query streamQuery = readPreference == null ? query : query.withReadPreference(readPreference);
+        try (Stream<T> stream = mongoOperations.stream(streamQuery, metadata.getJavaType(), metadata.getCollectionName())) {
+            List<R> chunk = new ArrayList<>(CHUNK_SIZE);
+            stream.forEach(entity -> {
+                chunk.add(convert(entity));
+                if (chunk.size() == CHUNK_SIZE) {
+                    consumer.accept(new ArrayList<>(chunk));
+                    chunk.clear();
+                }
+            });
+            if (!chunk.isEmpty()) {
+                consumer.accept(chunk);
+            }
+        }
+    }
+
+    /**
+     * Scans the given range chunk by chunk, each chunk being read by its own query, after the last {@code _id} of the
+     * previous one: the {@code $expr} comparison follows the comparison order of MongoDB, even across BSON types.
+     */
+    @SuppressWarnings("unchecked")
+    private void scanRange(Query range, boolean descending, BlockingQueue<List<R>> queue, AtomicReference<RuntimeException> failure) {
+        try {
+            try {
+                Document filter = aggregations.filter(range);
+                List<Document> documents = aggregations.find(filter, range, CHUNK_SIZE, readPreference);
+                while (!documents.isEmpty()) {
+                    List<R> chunk = new ArrayList<>(documents.size());
+                    for (Document document : documents) {
+                        chunk.add(convert(mongoOperations.getConverter().read(metadata.getJavaType(), document)));
+                    }
+                    queue.put(chunk);
+                    if (documents.size() < CHUNK_SIZE) {
+                        break;
+                    }
+                    Object lastId = documents.get(documents.size() - 1).get("_id");
+                    Document after = new Document("$expr", new Document(descending ? "$lt" : "$gt",
+                            asList("$_id", new Document("$literal", lastId))));
+                    documents = aggregations.find(new Document("$and", asList(filter, after)), range, CHUNK_SIZE, readPreference);
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+            queue.put((List<R>) (List<?>) END_OF_RANGE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private R convert(T entity) {
+        return converter == null ? (R) entity : converter.apply(entity);
+    }
+}
@@ -0,0 +1,173 @@
+package org.springframework.data.mongodb.datatables;
+
+import lombok.Value;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Explains the page queries once per shape, see {@link DataTablesPlanGuard}.
+ */
+final class PlanGuard {
+
+    private static final Log logger = LogFactory.getLog(PlanGuard.class);
+
+    private final DataTablesPlanGuard configuration;
+    private final Aggregations aggregations;
+    private final String collectionName;
+    private final Map<List<Object>, Plan> plans;
+
+    PlanGuard(DataTablesPlanGuard configuration, Aggregations aggregations, String collectionName) {
+        this.configuration = configuration;
+        this.aggregations = aggregations;
+        this.collectionName = collectionName;
+        this.plans = new LinkedHashMap<List<Object>, Plan>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Plan> eldest) {
+                return size() > configuration.maximumShapes();
+            }
+        };
+    }
+
+    DataTablesPlanGuard getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Returns the plan of the given query, explaining it if its shape was not explained yet.
+     */
+    Plan inspect(Query query) {
+        List<Object> shape = asList(shape(query.getQueryObject()), query.getSortObject(), query.getHint(),
+                query.getCollation().map(Object::toString).orElse(null));
+        synchronized (plans) {
+            Plan plan = plans.get(shape);
+            if (plan != null) {
+                return plan;
+            }
+        }
+
+        // concurrent requests of a new shape may explain it more than once, which is harmless
+        Set<String> stages = new TreeSet<>();
+        Document explanation = aggregations.explain(query);
+        Object queryPlanner = explanation.get("queryPlanner");
+        collectStages(queryPlanner instanceof Document ? ((Document) queryPlanner).get("winningPlan") : explanation, stages);
+        Plan plan = new Plan(stages.contains("SORT"), stages.contains("COLLSCAN"));
+        if (plan.isInMemorySort() || plan.isCollectionScan()) {
+            logger.warn("The query " + shape.get(0) + " sorted by " + shape.get(1) + " on the collection " + collectionName
+                    + " uses the stages " + stages + ", " + describe(plan));
+        }
+
+        synchronized (plans) {
+            plans.put(shape, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Returns what is done for the given plan, or {@code null} if it is fine.
+     */
+    String describe(Plan plan) {
+        if (plan.isCollectionScan() && configuration.rejectCollectionScans()) {
+            return "the query was rejected since it requires a collection scan";
+        }
+        if (!plan.isInMemorySort()) {
+            return plan.isCollectionScan() ? "the query requires a collection scan" : null;
+        }
+        switch (configuration.onInMemorySort()) {
+            case DEFAULT_ORDER:
+                return "the query was sorted by " + configuration.defaultOrder() + " since the requested order requires an in-memory sort";
+            case ALLOW_DISK_USE:
+                return "the query may use the disk since it requires an in-memory sort";
+            default:
+                return "the query was rejected since it requires an in-memory sort";
+        }
+    }
+
+    boolean isRejected(Plan plan) {
+        return plan.isCollectionScan() && configuration.rejectCollectionScans()
+                || plan.isInMemorySort() && configuration.onInMemorySort() == DataTablesPlanGuard.Action.REJECT;
+    }
+
+    /**
+     * Returns the given query, modified according to the policy if its plan contains a blocking sort.
+     */
+    Query apply(Query query, Plan plan) {
+        if (!plan.isInMemorySort()) {
+            return query;
+        }
+        switch (configuration.onInMemorySort()) {
+            case DEFAULT_ORDER:
+                BasicQuery reordered = new BasicQuery(query.getQueryObject(), query.getFieldsObject());
+                reordered.with(Sort.by(configuration.defaultDirection(), configuration.defaultOrder()));
+                reordered.skip(query.getSkip());
+                reordered.limit(query.getLimit());
+                query.getCollation().ifPresent(reordered::collation);
+                if (query.getHint() != null) {
+                    reordered.withHint(query.getHint());
+                }
+                return reordered;
+            case ALLOW_DISK_USE:
+                return query.allowDiskUse(true);
+            default:
+                return query;
+        }
+    }
+
+    /**
+     * Returns the given filter with its values replaced by their type, except for the operators.
+     */
+    private static Object shape(Object value) {
+        if (value instanceof Map) {
+            Map<Object, Object> shape = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((key, nested) -> shape.put(key, shape(nested)));
+            return shape;
+        }
+        if (value instanceof Collection) {
+            // the clauses of $and, $or and $nor, or the values of $in
+            List<Object> shape = new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                Object elementShape = shape(element);
+                if (!shape.contains(elementShape) || element instanceof Map) {
+                    shape.add(elementShape);
+                }
+            }
+            return shape;
+        }
+        return value == null ? null : value.getClass().getSimpleName();
+    }
+
+    private static void collectStages(Object plan, Set<String> stages) {
+        if (plan instanceof Map) {
+            ((Map<?, ?>) plan).forEach((key, value) -> {
+                if ("stage".equals(key) && value instanceof String) {
+                    stages.add((String) value);
+                } else {
+                    collectStages(value, stages);
+                }
+            });
+        } else if (plan instanceof Collection) {
+            for (Object element : (Collection<?>) plan) {
+                collectStages(element, stages);
+            }
+        }
+    }
+
+    @Value
+    static class Plan {
+        boolean inMemorySort;
+        boolean collectionScan;
+    }
+}
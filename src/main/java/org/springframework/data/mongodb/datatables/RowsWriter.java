@@ -0,0 +1,100 @@
+package org.springframework.data.mongodb.datatables;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the {@link DataTablesOutput#getData() data} of a {@link DataTablesOutput}, either as objects or as an array
+ * of arrays (see {@link DataTablesInput#isArrayRows()}), independently of the Jackson version the subclasses write
+ * with.
+ * <p>
+ * The rows are written one after the other to the generator, without building an intermediate tree or map. In the
+ * array format, the values are read with the property accessors Jackson would use to serialize the rows as objects
+ * (so {@code @JsonProperty}, {@code @JsonIgnore} and the active {@code @JsonView} are honored). Columns whose data does
+ * not match any visible property are written as {@code null}, in order to preserve the positions: since the columns
+ * are sent by the client, they must not give access to the properties the object format would hide.
+ *
+ * @param <P> the type of the property accessors
+ * @param <E> the exception thrown by the generator
+ */
+abstract class RowsWriter<P, E extends Exception> {
+
+    /**
+     * Writes the rows as objects, or as arrays of the values of the given columns if they are not {@code null}.
+     */
+    final void writeRows(Iterable<?> data, List<String> columns) throws E {
+        if (columns == null) {
+            writeStartArray();
+            for (Object row : data) {
+                if (row == null) {
+                    writeNull();
+                } else {
+                    writeRow(row);
+                }
+            }
+            writeEndArray();
+            return;
+        }
+
+        String[][] paths = new String[columns.size()][];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = columns.get(i) == null ? new String[]{""} : columns.get(i).split("\\.");
+        }
+
+        writeStartArray();
+        for (Object row : data) {
+            writeStartArray();
+            for (String[] path : paths) {
+                writeValue(row, path, 0);
+            }
+            writeEndArray();
+        }
+        writeEndArray();
+    }
+
+    private void writeValue(Object value, String[] path, int index) throws E {
+        if (value == null) {
+            writeNull();
+        } else if (index == path.length) {
+            writeLeaf(value);
+        } else if (value instanceof Iterable) {
+            writeStartArray();
+            for (Object element : (Iterable<?>) value) {
+                writeValue(element, path, index);
+            }
+            writeEndArray();
+        } else if (value instanceof Map) {
+            writeValue(((Map<?, ?>) value).get(path[index]), path, index + 1);
+        } else {
+            P property = getProperty(value.getClass(), path[index]);
+            if (property == null) {
+                writeNull();
+                return;
+            }
+            writeValue(get(property, value), path, index + 1);
+        }
+    }
+
+    abstract void writeStartArray() throws E;
+
+    abstract void writeEndArray() throws E;
+
+    abstract void writeNull() throws E;
+
+    /**
+     * Writes a row as an object, with the serializer of its class.
+     */
+    abstract void writeRow(Object row) throws E;
+
+    /**
+     * Writes the value of a column.
+     */
+    abstract void writeLeaf(Object value) throws E;
+
+    /**
+     * Returns the accessor of the given property of the given class, or {@code null} if the property is not visible.
+     */
+    abstract P getProperty(Class<?> type, String name) throws E;
+
+    abstract Object get(P property, Object bean) throws E;
+}
@@ -0,0 +1,93 @@
+package org.springframework.data.mongodb.datatables;
+
+import org.bson.Document;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Computes the tokens of a {@link DataTablesSearchIndex}.
+ */
+final class SearchTokens {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SearchTokens() {}
+
+    /**
+     * Returns the tokens of the given fields of the given document: every substring of up to {@code gramLength}
+     * characters of every word.
+     *
+     * @param fields the names of the fields (and not of the properties), possibly nested in arrays of sub-documents
+     */
+    static List<String> ofDocument(Document document, Collection<String> fields, int gramLength) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String field : fields) {
+            List<Object> values = new ArrayList<>();
+            collect(document, field.split("\\."), 0, values);
+            for (Object value : values) {
+                for (String word : words(value.toString())) {
+                    for (int length = 1; length <= gramLength; length++) {
+                        for (int i = 0; i + length <= word.length(); i++) {
+                            tokens.add(word.substring(i, i + length));
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * Returns the tokens that a document must all contain to match the given search: the words of up to
+     * {@code gramLength} characters, and the substrings of {@code gramLength} characters of the longer ones.
+     */
+    static List<String> ofSearch(String search, int gramLength) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String word : words(search)) {
+            if (word.length() <= gramLength) {
+                tokens.add(word);
+            } else {
+                for (int i = 0; i + gramLength <= word.length(); i++) {
+                    tokens.add(word.substring(i, i + gramLength));
+                }
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private static List<String> words(String value) {
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        for (String word : SEPARATORS.split(normalized)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static void collect(Object value, String[] path, int depth, List<Object> values) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                collect(element, path, depth, values);
+            }
+        } else if (depth == path.length) {
+            values.add(value);
+        } else if (value instanceof Map) {
+            collect(((Map<?, ?>) value).get(path[depth]), path, depth + 1, values);
+        }
+    }
+}
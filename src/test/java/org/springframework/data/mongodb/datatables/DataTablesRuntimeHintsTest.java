@@ -0,0 +1,46 @@
+package org.springframework.data.mongodb.datatables;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.core.io.support.SpringFactoriesLoader;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DataTablesRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Before
+    public void init() {
+        SpringFactoriesLoader.forResourceLocation("META-INF/spring/aot.factories")
+                .load(RuntimeHintsRegistrar.class)
+                .forEach(registrar -> registrar.registerHints(hints, getClass().getClassLoader()));
+    }
+
+    @Test
+    public void repository() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(DataTablesRepositoryImpl.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(DataTablesCollation.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(DataTablesCounters.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(DataTablesMaxLength.class)).accepts(hints);
+    }
+
+    @Test
+    public void binding() throws Exception {
+        assertThat(RuntimeHintsPredicates.reflection().onMethodInvocation(DataTablesInput.class.getMethod("setColumns", List.class))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethodInvocation(DataTablesInput.Column.class.getMethod("getData"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethodInvocation(DataTablesOutput.FacetBucket.class.getMethod("getCount"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethodInvocation(DataTablesGroup.class.getMethod("getRows"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(DataTablesOutputSerializer.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(DataTablesOutputJackson3Serializer.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)).accepts(hints);
+    }
+}
@@ -0,0 +1,21 @@
+package org.springframework.data.mongodb.datatables;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document
+@Data
+@AllArgsConstructor
+@DataTablesSearchIndex(columns = {"label", "category"})
+class IndexedProduct {
+
+    @Id
+    private long id;
+
+    private String label;
+
+    private String category;
+
+}
@@ -0,0 +1,4 @@
+package org.springframework.data.mongodb.datatables;
+
+interface IndexedProductRepository extends DataTablesRepository<IndexedProduct, Long> {
+}
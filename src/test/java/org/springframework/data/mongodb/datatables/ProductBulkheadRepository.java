@@ -0,0 +1,5 @@
+package org.springframework.data.mongodb.datatables;
+
+@DataTablesBulkhead(maxConcurrentExpensive = 0, maxWaiting = 0, waitTimeoutMillis = 0)
+interface ProductBulkheadRepository extends DataTablesRepository<Product, Long> {
+}
@@ -0,0 +1,5 @@
+package org.springframework.data.mongodb.datatables;
+
+@DataTablesPageCache(maximumWeight = 100)
+interface ProductCachedRepository extends DataTablesRepository<Product, Long> {
+}
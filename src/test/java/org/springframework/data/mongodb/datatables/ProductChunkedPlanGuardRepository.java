@@ -0,0 +1,6 @@
+package org.springframework.data.mongodb.datatables;
+
+@DataTablesMaxLength(2)
+@DataTablesPlanGuard(onInMemorySort = DataTablesPlanGuard.Action.DEFAULT_ORDER)
+interface ProductChunkedPlanGuardRepository extends DataTablesRepository<Product, Long> {
+}
@@ -0,0 +1,5 @@
+package org.springframework.data.mongodb.datatables;
+
+@DataTablesMaxLength(2)
+interface ProductChunkedRepository extends DataTablesRepository<Product, Long> {
+}
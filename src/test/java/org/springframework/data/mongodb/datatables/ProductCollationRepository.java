@@ -0,0 +1,5 @@
+package org.springframework.data.mongodb.datatables;
+
+@DataTablesCollation(locale = "en", strength = 1)
+interface ProductCollationRepository extends DataTablesRepository<Product, Long> {
+}
@@ -0,0 +1,5 @@
+package org.springframework.data.mongodb.datatables;
+
+@DataTablesCounters(fields = "isEnabled")
+interface ProductCountersRepository extends DataTablesRepository<Product, Long> {
+}
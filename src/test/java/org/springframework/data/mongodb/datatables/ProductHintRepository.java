@@ -0,0 +1,6 @@
+package org.springframework.data.mongodb.datatables;
+
+@DataTablesHint(index = "missing_index", columns = "label")
+@DataTablesHint(index = "{ _id: 1 }")
+interface ProductHintRepository extends DataTablesRepository<Product, Long> {
+}
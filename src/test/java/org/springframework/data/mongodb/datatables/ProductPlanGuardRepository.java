@@ -0,0 +1,5 @@
+package org.springframework.data.mongodb.datatables;
+
+@DataTablesPlanGuard(onInMemorySort = DataTablesPlanGuard.Action.DEFAULT_ORDER)
+interface ProductPlanGuardRepository extends DataTablesRepository<Product, Long> {
+}
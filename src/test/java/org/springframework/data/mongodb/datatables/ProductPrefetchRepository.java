@@ -0,0 +1,5 @@
+package org.springframework.data.mongodb.datatables;
+
+@DataTablesPrefetch(maximumWeight = 100)
+interface ProductPrefetchRepository extends DataTablesRepository<Product, Long> {
+}
@@ -0,0 +1,5 @@
+package org.springframework.data.mongodb.datatables;
+
+@DataTablesReadPreference(count = "secondaryPreferred", page = "nearest", maxStalenessSeconds = 90)
+interface ProductReadPreferenceRepository extends DataTablesRepository<Product, Long> {
+}
@@ -1,30 +1,109 @@
 package org.springframework.data.mongodb.datatables;
 
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.mongodb.datatables.DataTablesInput.Search.SearchMode;
+import org.springframework.data.mongodb.repository.support.MappingMongoEntityInformation;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.unwind;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = TestConfiguration.class)
 public class ProductRepositoryTest {
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductCollationRepository productCollationRepository;
+
+    @Autowired
+    private ProductCachedRepository productCachedRepository;
+
+    @Autowired
+    private ProductPrefetchRepository productPrefetchRepository;
+
+    @Autowired
+    private ProductHintRepository productHintRepository;
+
+    @Autowired
+    private ProductBulkheadRepository productBulkheadRepository;
+
+    @Autowired
+    private ProductPlanGuardRepository productPlanGuardRepository;
+
+    @Autowired
+    private ProductCountersRepository productCountersRepository;
+
+    @Autowired
+    private ProductChunkedRepository productChunkedRepository;
+
+    @Autowired
+    private ProductChunkedPlanGuardRepository productChunkedPlanGuardRepository;
+
+    @Autowired
+    private IndexedProductRepository indexedProductRepository;
+
     @Before
     public void init() {
+        productCachedRepository.evictPageCache();
         productRepository.deleteAll();
         productRepository.save(Product.PRODUCT1);
         productRepository.save(Product.PRODUCT2);
@@ -336,4 +415,894 @@ public class ProductRepositoryTest {
 
         assertThat(output.getData()).containsOnly(Product.PRODUCT1, Product.PRODUCT2, Product.PRODUCT3);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void export() {
+        DataTablesInput input = getDefaultInput();
+        input.setLength(1);
+        input.setOrder(singletonList(new DataTablesInput.Order(0, DataTablesInput.Order.Direction.desc)));
+
+        List<String> labels = new ArrayList<>();
+        productRepository.export(input, 4, Product::getLabel, labels::addAll);
+        assertThat(labels).containsExactly("product3", "product2", "product1");
+    }
+
+    @Test
+    public void partitionedExport() {
+        List<Product> products = new ArrayList<>();
+        List<String> expected = new ArrayList<>(asList("product1", "product2", "product3"));
+        // more records per range than PartitionedExport.CHUNK_SIZE, so that each range is read with several queries
+        for (int id = 4; id <= 2500; id++) {
+            products.add(Product.builder().id(id).label("product" + id).build());
+            expected.add("product" + id);
+        }
+        productRepository.insert(products);
+        // an _id of another type, which the _id ranges of the sampled type do not match
+        mongoTemplate.insert(new Document("_id", "1000").append("label", "product1000"), "product");
+        expected.add("product1000");
+
+        DataTablesInput input = getDefaultInput();
+        input.setOrder(singletonList(new DataTablesInput.Order(0, DataTablesInput.Order.Direction.asc)));
+
+        List<String> labels = new ArrayList<>();
+        productRepository.export(input, 2, Product::getLabel, labels::addAll);
+        assertThat(labels).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void readPreference() {
+        // a standalone server is selected whatever the read preference, so the routing is checked on the queries
+        List<ReadPreference> countReadPreferences = new CopyOnWriteArrayList<>();
+        List<ReadPreference> pageReadPreferences = new CopyOnWriteArrayList<>();
+        MongoTemplate recordingTemplate = new MongoTemplate(mongoTemplate.getMongoDatabaseFactory(), mongoTemplate.getConverter()) {
+            @Override
+            public long count(Query query, String collectionName) {
+                countReadPreferences.add(query.getReadPreference());
+                return super.count(query, collectionName);
+            }
+
+            @Override
+            public <T> List<T> find(Query query, Class<T> entityClass, String collectionName) {
+                pageReadPreferences.add(query.getReadPreference());
+                return super.find(query, entityClass, collectionName);
+            }
+        };
+        DataTablesRepositoryImpl<Product, Long> repository =
+                new DataTablesRepositoryImpl<>(getEntityInformation(Product.class), recordingTemplate);
+        repository.configure(ProductReadPreferenceRepository.class, false);
+
+        DataTablesInput input = getDefaultInput();
+        input.setLength(1);
+
+        DataTablesOutput<Product> output = repository.findAll(input, null, where("isEnabled").is(true));
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsTotal()).isEqualTo(2L);
+        assertThat(output.getRecordsFiltered()).isEqualTo(2L);
+        assertThat(output.getHasNext()).isTrue();
+        assertThat(output.getData()).hasSize(1);
+        // recordsTotal and recordsFiltered, then the page
+        assertThat(countReadPreferences).containsExactly(
+                ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS), ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS));
+        assertThat(pageReadPreferences).containsExactly(ReadPreference.nearest(90, TimeUnit.SECONDS));
+
+        output = repository.findAll(getDefaultInput());
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsTotal()).isEqualTo(3L);
+        assertThat(output.getData()).containsOnly(Product.PRODUCT1, Product.PRODUCT2, Product.PRODUCT3);
+        repository.close();
+
+        // without the annotation, the read preference of the template is kept
+        countReadPreferences.clear();
+        pageReadPreferences.clear();
+        repository = new DataTablesRepositoryImpl<>(getEntityInformation(Product.class), recordingTemplate);
+        repository.configure(ProductRepository.class, false);
+        output = repository.findAll(input, null, where("isEnabled").is(true));
+        assertThat(output.getError()).isNull();
+        assertThat(countReadPreferences).containsExactly((ReadPreference) null, null);
+        assertThat(pageReadPreferences).containsExactly((ReadPreference) null);
+        repository.close();
+    }
+
+    @Test
+    public void collation() {
+        DataTablesInput input = getDefaultInput();
+        input.setSearch(new DataTablesInput.Search(" PRÔduct2  "));
+
+        DataTablesOutput<Product> output = productCollationRepository.findAll(input);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getData()).containsOnly(Product.PRODUCT2);
+
+        input.setSearch(new DataTablesInput.Search("PRODUCT3", SearchMode.EXACT_MATCH));
+
+        output = productCollationRepository.findAll(input);
+        assertThat(output.getData()).containsOnly(Product.PRODUCT3);
+
+        // without a search nor an order, the criteria are not matched with the collation
+        output = productCollationRepository.findAll(getDefaultInput(), null, where("label").is("PRODUCT3"));
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsTotal()).isEqualTo(0L);
+        assertThat(output.getData()).isEmpty();
+
+        // nor with a search, since they compare strings
+        output = productCollationRepository.findAll(input, null, where("label").is("PRODUCT3"));
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsTotal()).isEqualTo(0L);
+        assertThat(output.getData()).isEmpty();
+    }
+
+    @Test
+    public void pageCache() {
+        DataTablesInput input = getDefaultInput();
+
+        DataTablesOutput<Product> output = productCachedRepository.findAll(input);
+        assertThat(output.getRecordsTotal()).isEqualTo(3L);
+        // the records returned by the cache are not shared
+        output.getData().forEach(product -> product.setLabel("masked"));
+
+        productRepository.deleteById(Product.PRODUCT3.getId());
+        input.setDraw(2);
+
+        output = productCachedRepository.findAll(input);
+        assertThat(output.getDraw()).isEqualTo(2);
+        assertThat(output.getRecordsTotal()).isEqualTo(3L);
+        assertThat(output.getData()).containsOnly(Product.PRODUCT1, Product.PRODUCT2, Product.PRODUCT3);
+        output.getData().forEach(product -> product.setLabel("masked"));
+
+        output = productCachedRepository.findAll(input);
+        assertThat(output.getData()).containsOnly(Product.PRODUCT1, Product.PRODUCT2, Product.PRODUCT3);
+
+        productCachedRepository.evictPageCache();
+
+        DataTablesOutput<String> labels = productCachedRepository.findAll(input, Product::getLabel);
+        assertThat(labels.getRecordsTotal()).isEqualTo(2L);
+        assertThat(labels.getData()).containsOnly("product1", "product2");
+
+        // the inputs differing only by their output format or counting mode are cached separately
+        DataTablesInput arrayRows = input.withPaging(input.getStart(), input.getLength());
+        arrayRows.setArrayRows(true);
+        DataTablesInput deferred = input.withPaging(input.getStart(), input.getLength());
+        deferred.setCountingRecordsDeferred(true);
+        assertThat(DataTablesKey.of(arrayRows, emptyList(), emptyList())).isNotEqualTo(DataTablesKey.of(input, emptyList(), emptyList()));
+        assertThat(DataTablesKey.of(deferred, emptyList(), emptyList())).isNotEqualTo(DataTablesKey.of(input, emptyList(), emptyList()));
+    }
+
+    @Test
+    public void prefetch() throws Exception {
+        productPrefetchRepository.evictPageCache();
+        DataTablesPrefetchStats initialStats = productPrefetchRepository.getPrefetchStats();
+        DataTablesInput input = getDefaultInput();
+        input.setLength(1);
+        input.setOrder(singletonList(new DataTablesInput.Order(0, DataTablesInput.Order.Direction.asc)));
+
+        DataTablesOutput<Product> output = productPrefetchRepository.findAll(input);
+        assertThat(output.getData()).containsExactly(Product.PRODUCT1);
+        // the first page was not prefetched, so it is not a miss
+        assertThat(productPrefetchRepository.getPrefetchStats().getHits()).isEqualTo(initialStats.getHits());
+        assertThat(productPrefetchRepository.getPrefetchStats().getMisses()).isEqualTo(initialStats.getMisses());
+
+        // the second page is fetched in the background
+        awaitPrefetched(initialStats.getFetched() + 1);
+        input.setStart(1);
+        input.setDraw(2);
+        output = productPrefetchRepository.findAll(input);
+        assertThat(output.getDraw()).isEqualTo(2);
+        assertThat(output.getRecordsTotal()).isEqualTo(3L);
+        assertThat(output.getHasNext()).isTrue();
+        assertThat(output.getData()).containsExactly(Product.PRODUCT2);
+        assertThat(productPrefetchRepository.getPrefetchStats().getHits()).isEqualTo(initialStats.getHits() + 1);
+
+        // the prefetched third page is discarded with the buffer
+        awaitPrefetched(initialStats.getFetched() + 2);
+        productRepository.deleteById(Product.PRODUCT3.getId());
+        productPrefetchRepository.evictPageCache();
+        input.setStart(2);
+        output = productPrefetchRepository.findAll(input);
+        assertThat(output.getData()).isEmpty();
+        assertThat(productPrefetchRepository.getPrefetchStats().getHits()).isEqualTo(initialStats.getHits() + 1);
+        assertThat(productPrefetchRepository.getPrefetchStats().getMisses()).isEqualTo(initialStats.getMisses());
+    }
+
+    private void awaitPrefetched(long fetched) throws InterruptedException {
+        for (int i = 0; i < 50 && productPrefetchRepository.getPrefetchStats().getFetched() < fetched; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(productPrefetchRepository.getPrefetchStats().getFetched()).isEqualTo(fetched);
+    }
+
+    @Test
+    public void hint() {
+        DataTablesInput input = getDefaultInput();
+
+        DataTablesOutput<Product> output = productHintRepository.findAll(input, null, where("isEnabled").is(true));
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsTotal()).isEqualTo(2L);
+        assertThat(output.getData()).containsOnly(Product.PRODUCT1, Product.PRODUCT2);
+
+        input.getColumn("label").ifPresent(column ->
+                column.setSearch(new DataTablesInput.Search("product3")));
+
+        output = productHintRepository.findAll(input);
+        assertThat(output.getError()).contains("hint");
+    }
+
+    @Test
+    public void facets() {
+        DataTablesInput input = getDefaultInput();
+        input.setLength(1);
+        input.setFacets(asList(new DataTablesInput.Facet(2, 10), new DataTablesInput.Facet(4, 10)));
+        input.getColumn("label").ifPresent(column ->
+                column.setSearch(new DataTablesInput.Search("product", SearchMode.PREFIX)));
+
+        DataTablesOutput<Product> output = productRepository.findAll(input);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getData()).hasSize(1);
+        assertThat(output.getFacets().get("isEnabled")).containsExactly(
+                new DataTablesOutput.FacetBucket(true, 2),
+                new DataTablesOutput.FacetBucket(false, 1));
+        assertThat(output.getFacets().get("characteristics.key")).containsOnly(
+                new DataTablesOutput.FacetBucket("key1", 2),
+                new DataTablesOutput.FacetBucket("key2", 2));
+    }
+
+    @Test
+    public void aggregates() {
+        DataTablesInput input = getDefaultInput();
+        input.setAggregates(asList(
+                new DataTablesInput.Aggregate(0, DataTablesInput.Aggregate.Operator.sum),
+                new DataTablesInput.Aggregate(0, DataTablesInput.Aggregate.Operator.avg)));
+
+        DataTablesOutput<Product> output = productRepository.findAll(input, where("isEnabled").is(true));
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsTotal()).isEqualTo(3L);
+        assertThat(output.getRecordsFiltered()).isEqualTo(2L);
+        assertThat(output.getAggregates().get("id")).containsEntry("sum", 3L).containsEntry("avg", 1.5);
+    }
+
+    @Test
+    public void batch() {
+        DataTablesInput first = getDefaultInput();
+        first.setDraw(3);
+        first.setLength(1);
+        DataTablesInput second = getDefaultInput();
+        second.setDraw(4);
+        second.setSearch(new DataTablesInput.Search("product2"));
+
+        List<DataTablesOutput<Product>> outputs = productRepository.findAll(asList(first, second), Duration.ofSeconds(10));
+        assertThat(outputs).hasSize(2);
+        assertThat(outputs.get(0).getDraw()).isEqualTo(3);
+        assertThat(outputs.get(0).getHasNext()).isTrue();
+        assertThat(outputs.get(1).getDraw()).isEqualTo(4);
+        assertThat(outputs.get(1).getData()).containsOnly(Product.PRODUCT2);
+
+        List<DataTablesOutput<?>> batch = DataTablesBatch.withTimeout(Duration.ofSeconds(10))
+                .add(second, productRepository::findAll)
+                .add(first, input -> productRepository.findAll(input, Product::getLabel))
+                .execute();
+        assertThat(batch.get(0).getDraw()).isEqualTo(4);
+        assertThat(batch.get(1).getData()).hasSize(1);
+    }
+
+    @Test
+    public void identicalRequests() throws Exception {
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<DataTablesOutput<Product>>> futures = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            int draw = i + 1;
+            futures.add(executor.submit(() -> {
+                DataTablesInput input = getDefaultInput();
+                input.setDraw(draw);
+                start.await();
+                return productRepository.findAll(input);
+            }));
+        }
+        start.countDown();
+
+        Set<Product> rows = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < callers; i++) {
+            DataTablesOutput<Product> output = futures.get(i).get(10, TimeUnit.SECONDS);
+            assertThat(output.getError()).isNull();
+            assertThat(output.getDraw()).isEqualTo(i + 1);
+            assertThat(output.getRecordsTotal()).isEqualTo(3L);
+            assertThat(output.getData()).containsOnly(Product.PRODUCT1, Product.PRODUCT2, Product.PRODUCT3);
+            rows.addAll(output.getData());
+        }
+        executor.shutdown();
+        // the requests sharing a query get their own copies of its records
+        assertThat(rows).hasSize(callers * 3);
+    }
+
+    @Test
+    public void bulkhead() {
+        DataTablesInput input = getDefaultInput();
+
+        DataTablesOutput<Product> output = productBulkheadRepository.findAll(input);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getData()).hasSize(3);
+
+        input.setSearch(new DataTablesInput.Search("product", SearchMode.REGEX));
+
+        output = productBulkheadRepository.findAll(input);
+        assertThat(output.getError()).startsWith("Too many expensive queries");
+        assertThat(output.getData()).isEmpty();
+    }
+
+    @Test
+    public void bulkheadPerCollection() {
+        DataTablesBulkhead limits = ProductBulkheadRepository.class.getAnnotation(DataTablesBulkhead.class);
+        Bulkhead bulkhead = Bulkhead.of("test.shared", "shared", limits);
+        // the repositories of the same collection share its limits
+        assertThat(Bulkhead.of("test.shared", "shared", limits)).isSameAs(bulkhead);
+        assertThat(Bulkhead.of("other.shared", "shared", limits)).isNotSameAs(bulkhead);
+
+        DataTablesBulkhead otherLimits = AnnotationUtils.synthesizeAnnotation(singletonMap("maxConcurrent", 1), DataTablesBulkhead.class, null);
+        assertThatThrownBy(() -> Bulkhead.of("test.shared", "shared", otherLimits)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void planGuard() {
+        DataTablesInput input = getDefaultInput();
+        input.setOrder(singletonList(new DataTablesInput.Order(0, DataTablesInput.Order.Direction.desc)));
+
+        DataTablesOutput<Product> output = productPlanGuardRepository.findAll(input);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getWarning()).isNull();
+        assertThat(output.getData()).containsExactly(Product.PRODUCT3, Product.PRODUCT2, Product.PRODUCT1);
+
+        input.setOrder(singletonList(new DataTablesInput.Order(1, DataTablesInput.Order.Direction.desc)));
+
+        output = productPlanGuardRepository.findAll(input);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getWarning()).startsWith("the query was sorted by id");
+        assertThat(output.getData()).containsExactly(Product.PRODUCT1, Product.PRODUCT2, Product.PRODUCT3);
+    }
+
+    @Test
+    public void grouped() {
+        DataTablesInput input = getDefaultInput();
+        input.setLength(1);
+        input.setOrder(asList(
+                new DataTablesInput.Order(2, DataTablesInput.Order.Direction.desc),
+                new DataTablesInput.Order(0, DataTablesInput.Order.Direction.desc)
+        ));
+
+        DataTablesOutput<DataTablesGroup<Product>> output = productRepository.findAllGrouped(input, "isEnabled");
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsTotal()).isEqualTo(2);
+        assertThat(output.getRecordsFiltered()).isEqualTo(2);
+        assertThat(output.getHasNext()).isTrue();
+        assertThat(output.getData()).hasSize(1);
+        assertThat(output.getData().get(0).getValue()).isEqualTo(true);
+        assertThat(output.getData().get(0).getCount()).isEqualTo(2);
+        assertThat(output.getData().get(0).getRows()).containsExactly(Product.PRODUCT2, Product.PRODUCT1);
+
+        input.setStart(1);
+        output = productRepository.findAllGrouped(input, "isEnabled");
+        assertThat(output.getHasNext()).isFalse();
+        assertThat(output.getData().get(0).getValue()).isEqualTo(false);
+        assertThat(output.getData().get(0).getRows()).containsExactly(Product.PRODUCT3);
+    }
+
+    @Test
+    public void groupedWithCollation() {
+        productRepository.save(Product.builder().id(4).label("PRODUCT1").isEnabled(true).build());
+        DataTablesInput input = getDefaultInput();
+        input.setOrder(singletonList(new DataTablesInput.Order(1, DataTablesInput.Order.Direction.asc)));
+
+        // the records are assigned to the groups with the collation of the groups
+        DataTablesOutput<DataTablesGroup<Product>> output = productCollationRepository.findAllGrouped(input, "label");
+        assertThat(output.getError()).isNull();
+        // the groups are counted with the same collation
+        assertThat(output.getRecordsTotal()).isEqualTo(3);
+        assertThat(output.getRecordsFiltered()).isEqualTo(3);
+        assertThat(output.getData()).hasSize(3);
+        assertThat(output.getData().get(0).getCount()).isEqualTo(2);
+        assertThat(output.getData().get(0).getRows()).extracting(Product::getId).containsOnly(1L, 4L);
+    }
+
+    @Test
+    public void groupedByArray() {
+        DataTablesOutput<DataTablesGroup<Product>> output = productRepository.findAllGrouped(getDefaultInput(), "characteristics.key");
+        assertThat(output.getError()).isNull();
+        assertThat(output.getData()).hasSize(3)
+                .allSatisfy(group -> assertThat(group.getRows()).hasSize((int) group.getCount()));
+    }
+
+    @Test
+    public void counters() {
+        assertThat(productCountersRepository.reconcileCounters()).isEqualTo(2);
+
+        DataTablesOutput<Product> output = productCountersRepository.findAll(getDefaultInput(), null, where("isEnabled").is(true));
+        assertThat(output.getRecordsTotal()).isEqualTo(2);
+
+        productCountersRepository.save(Product.builder().id(4).label("product4").isEnabled(true).build());
+        productCountersRepository.save(Product.builder().id(3).label("product3").isEnabled(true).build());
+        productCountersRepository.deleteById(1L);
+
+        output = productCountersRepository.findAll(getDefaultInput(), null, where("isEnabled").is(true));
+        assertThat(output.getRecordsTotal()).isEqualTo(3);
+        output = productCountersRepository.findAll(getDefaultInput(), null, where("isEnabled").is(false));
+        assertThat(output.getRecordsTotal()).isEqualTo(0);
+    }
+
+    @Test
+    public void countersBatched() {
+        productCountersRepository.reconcileCounters();
+
+        productCountersRepository.saveAll(asList(
+                Product.builder().id(4).label("product4").isEnabled(true).build(),
+                Product.builder().id(3).label("product3").isEnabled(true).build()));
+        DataTablesOutput<Product> output = productCountersRepository.findAll(getDefaultInput(), null, where("isEnabled").is(true));
+        assertThat(output.getRecordsTotal()).isEqualTo(4);
+
+        productCountersRepository.deleteAll(productCountersRepository.findAllById(asList(1L, 2L)));
+        output = productCountersRepository.findAll(getDefaultInput(), null, where("isEnabled").is(true));
+        assertThat(output.getRecordsTotal()).isEqualTo(2);
+
+        assertThat(productCountersRepository.reconcileCounters()).isEqualTo(1);
+        output = productCountersRepository.findAll(getDefaultInput(), null, where("isEnabled").is(true));
+        assertThat(output.getRecordsTotal()).isEqualTo(2);
+        output = productCountersRepository.findAll(getDefaultInput(), null, where("isEnabled").is(false));
+        assertThat(output.getRecordsTotal()).isEqualTo(0);
+    }
+
+    @Test
+    public void chunks() {
+        DataTablesInput input = getDefaultInput();
+        input.setLength(-1);
+        input.setOrder(singletonList(new DataTablesInput.Order(0, DataTablesInput.Order.Direction.asc)));
+
+        DataTablesOutput<Product> output = productChunkedRepository.findAll(input);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsFiltered()).isEqualTo(3);
+        assertThat(output.getData()).containsExactly(Product.PRODUCT1, Product.PRODUCT2);
+        assertThat(output.getNextChunkToken()).isNotNull();
+
+        DataTablesOutput<Product> chunk = productChunkedRepository.findNextChunk(output.getNextChunkToken());
+        assertThat(chunk.getError()).isNull();
+        assertThat(chunk.getData()).containsExactly(Product.PRODUCT3);
+        assertThat(chunk.getNextChunkToken()).isNull();
+        assertThat(chunk.getHasNext()).isFalse();
+
+        chunk = productChunkedRepository.findNextChunk(output.getNextChunkToken());
+        assertThat(chunk.getError()).startsWith("Unknown or expired cursor token");
+    }
+
+    @Test
+    public void chunksWithPlanGuard() {
+        DataTablesInput input = getDefaultInput();
+        input.setLength(-1);
+        input.setOrder(singletonList(new DataTablesInput.Order(1, DataTablesInput.Order.Direction.desc)));
+
+        DataTablesOutput<Product> output = productChunkedPlanGuardRepository.findAll(input);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getWarning()).startsWith("the query was sorted by id");
+        assertThat(output.getData()).containsExactly(Product.PRODUCT1, Product.PRODUCT2);
+
+        // the following chunks are read in the same order
+        DataTablesOutput<Product> chunk = productChunkedPlanGuardRepository.findNextChunk(output.getNextChunkToken());
+        assertThat(chunk.getError()).isNull();
+        assertThat(chunk.getData()).containsExactly(Product.PRODUCT3);
+    }
+
+    @Test
+    public void chunksWithAggregation() {
+        DataTablesInput input = getDefaultInput();
+        input.setLength(-1);
+
+        DataTablesOutput<Document> output = productChunkedRepository.findAll(input, emptyList(), emptyList(),
+                newAggregation(unwind("characteristics")), Document.class);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getData()).hasSize(2);
+        assertThat(output.getNextChunkToken()).isNotNull();
+
+        List<Document> documents = new ArrayList<>(output.getData());
+        String token = output.getNextChunkToken();
+        while (token != null) {
+            DataTablesOutput<Document> chunk = productChunkedRepository.findNextChunk(token);
+            assertThat(chunk.getError()).isNull();
+            documents.addAll(chunk.getData());
+            token = chunk.getNextChunkToken();
+        }
+        assertThat((long) documents.size()).isEqualTo(output.getRecordsFiltered());
+    }
+
+    @Test
+    public void chunksWithGroups() {
+        DataTablesInput input = getDefaultInput();
+        input.setLength(-1);
+
+        DataTablesOutput<DataTablesGroup<Product>> output = productChunkedRepository.findAllGrouped(input, "label");
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsFiltered()).isEqualTo(3);
+        assertThat(output.getData()).extracting(DataTablesGroup::getValue).containsExactly("product1", "product2");
+
+        DataTablesOutput<DataTablesGroup<Product>> chunk = productChunkedRepository.findNextChunk(output.getNextChunkToken());
+        assertThat(chunk.getError()).isNull();
+        assertThat(chunk.getData()).extracting(DataTablesGroup::getValue).containsExactly("product3");
+        assertThat(chunk.getNextChunkToken()).isNull();
+    }
+
+    @Test
+    public void deferredCounting() {
+        productRepository.evictPageCache();
+        DataTablesInput input = getDefaultInput();
+        input.setLength(1);
+        input.setCountingRecordsDeferred(true);
+
+        DataTablesOutput<Product> output = productRepository.findAll(input);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getData()).hasSize(1);
+        assertThat(output.getRecordsTotal()).isNull();
+        assertThat(output.getCountToken()).isNotNull();
+        // the input of the caller is left unchanged
+        assertThat(input.isCountingRecordsDisabled()).isFalse();
+
+        input.setStart(1);
+        DataTablesOutput<Product> nextPage = productRepository.findAll(input);
+        assertThat(nextPage.getCountToken()).isEqualTo(output.getCountToken());
+
+        DataTablesOutput<Product> counts = productRepository.findCounts(output.getCountToken(), Duration.ofSeconds(5));
+        assertThat(counts.getError()).isNull();
+        assertThat(counts.getRecordsTotal()).isEqualTo(3);
+        assertThat(counts.getRecordsFiltered()).isEqualTo(3);
+
+        counts = productRepository.findCounts("unknown", Duration.ofSeconds(5));
+        assertThat(counts.getError()).startsWith("Unknown or expired count token");
+
+        // once evicted, the counts are computed again, the returned token still being resolved
+        productRepository.evictPageCache();
+        nextPage = productRepository.findAll(input);
+        assertThat(nextPage.getCountToken()).isNotEqualTo(output.getCountToken());
+        counts = productRepository.findCounts(output.getCountToken(), Duration.ofSeconds(5));
+        assertThat(counts.getRecordsTotal()).isEqualTo(3);
+    }
+
+    @Test
+    public void baseAggregation() {
+        DataTablesInput input = getDefaultInput();
+        input.getColumns().get(4).setSearch(new DataTablesInput.Search("key1", SearchMode.EXACT_MATCH));
+
+        DataTablesOutput<Document> output = productRepository.findAll(input, emptyList(), singletonList(where("isEnabled").is(true)),
+                newAggregation(unwind("characteristics")), Document.class);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsTotal()).isEqualTo(3);
+        assertThat(output.getRecordsFiltered()).isEqualTo(2);
+        assertThat(output.getData()).extracting(document -> document.get("characteristics", Document.class).get("value"))
+                .containsOnly("val11", "val12");
+    }
+
+    @Test
+    public void baseAggregationWithId() {
+        // the clause is moved before the $unwind stage, where the id property is stored in _id
+        DataTablesOutput<Document> output = productRepository.findAll(getDefaultInput(), singletonList(where("id").is(1L)),
+                emptyList(), newAggregation(unwind("characteristics")), Document.class);
+        assertThat(output.getError()).isNull();
+        assertThat(output.getRecordsFiltered()).isEqualTo(2);
+        assertThat(output.getData()).extracting(document -> document.get("characteristics", Document.class).get("value"))
+                .containsOnly("val11", "val21");
+    }
+
+    @Test
+    public void arrayRows() throws Exception {
+        DataTablesInput input = getDefaultInput();
+        input.setColumns(asList(
+                createColumn("id", true, true),
+                createColumn("label", true, true),
+                createColumn("characteristics.key", true, true),
+                createColumn("unknown", false, false)
+        ));
+        input.setOrder(singletonList(new DataTablesInput.Order(0, DataTablesInput.Order.Direction.asc)));
+        input.setArrayRows(true);
+
+        DataTablesOutput<Product> output = productRepository.findAll(input);
+        String data = "\"data\":[" +
+                "[1,\"product1\",[\"key1\",\"key2\"],null]," +
+                "[2,\"product2\",[\"key1\"],null]," +
+                "[3,\"product3\",[\"key2\"],null]]";
+        assertThat(new ObjectMapper().writeValueAsString(output)).contains(data);
+        assertThat(tools.jackson.databind.json.JsonMapper.builder().build().writeValueAsString(output)).contains(data);
+    }
+
+    @Test
+    public void arrayRowsWithView() throws Exception {
+        DataTablesInput input = getDefaultInput();
+        input.setColumns(asList(
+                createColumn("id", true, true),
+                createColumn("label", true, true)
+        ));
+        input.setOrder(singletonList(new DataTablesInput.Order(0, DataTablesInput.Order.Direction.asc)));
+        input.setArrayRows(true);
+
+        // the label is not part of the view, and thus cannot be selected with the columns
+        DataTablesOutput<ProductRow> output = productRepository.findAll(input, product -> new ProductRow(product.getId(), product.getLabel()));
+        ObjectMapper mapper = JsonMapper.builder().disable(MapperFeature.DEFAULT_VIEW_INCLUSION).build();
+        assertThat(mapper.writerWithView(DataTablesOutput.View.class).writeValueAsString(output))
+                .contains("\"data\":[[1,null],[2,null],[3,null]]");
+        assertThat(mapper.writeValueAsString(output))
+                .contains("\"data\":[[1,\"product1\"],[2,\"product2\"],[3,\"product3\"]]");
+
+        tools.jackson.databind.ObjectMapper jackson3Mapper = tools.jackson.databind.json.JsonMapper.builder()
+                .disable(tools.jackson.databind.MapperFeature.DEFAULT_VIEW_INCLUSION).build();
+        assertThat(jackson3Mapper.writerWithView(DataTablesOutput.View.class).writeValueAsString(output))
+                .contains("\"data\":[[1,null],[2,null],[3,null]]");
+        assertThat(jackson3Mapper.writeValueAsString(output))
+                .contains("\"data\":[[1,\"product1\"],[2,\"product2\"],[3,\"product3\"]]");
+    }
+
+    static final class ProductRow {
+
+        @JsonView(DataTablesOutput.View.class)
+        public final long id;
+
+        public final String label;
+
+        ProductRow(long id, String label) {
+            this.id = id;
+            this.label = label;
+        }
+    }
+
+    @Test
+    public void subscribe() throws Exception {
+        // a standalone server has no change stream, so the changes are written to the collection, then notified by hand
+        FakeChangeStream changeStream = new FakeChangeStream();
+        DataTablesRepositoryImpl<Product, Long> repository = new DataTablesRepositoryImpl<>(getEntityInformation(Product.class), mongoTemplate);
+        repository.configure(ProductRepository.class, false);
+        repository.changeStreamSource = (pipeline, query, resumeToken) -> changeStream;
+
+        List<DataTablesDelta<String>> deltas = new CopyOnWriteArrayList<>();
+        DataTablesSubscription subscription = repository.subscribe(getDefaultInput(), emptyList(),
+                singletonList(where("label").ne("hidden")), Product::getLabel, deltas::add);
+
+        mongoTemplate.updateFirst(query(where("id").is(1L)), Update.update("label", "hidden"), Product.class);
+        mongoTemplate.updateFirst(query(where("id").is(2L)), Update.update("label", "product2bis"), Product.class);
+        mongoTemplate.insert(Product.builder().id(4).label("product4").build());
+        mongoTemplate.remove(query(where("id").is(3L)), Product.class);
+        changeStream.add(change("update", 1L), change("update", 2L), change("insert", 4L), change("delete", 3L));
+
+        for (int i = 0; i < 50 && deltas.size() < 4; i++) {
+            Thread.sleep(100);
+        }
+        subscription.close();
+        repository.close();
+        assertThat(subscription.isClosed()).isTrue();
+        assertThat(changeStream.closed).isTrue();
+        assertThat(deltas).containsExactly(
+                new DataTablesDelta<>(DataTablesDelta.Type.REMOVED, 1L, null),
+                new DataTablesDelta<>(DataTablesDelta.Type.UPDATED, 2L, "product2bis"),
+                new DataTablesDelta<>(DataTablesDelta.Type.INSERTED, 4L, "product4"),
+                new DataTablesDelta<>(DataTablesDelta.Type.REMOVED, 3L, null));
+    }
+
+    @Test
+    public void subscribeResumed() throws Exception {
+        FakeChangeStream first = new FakeChangeStream();
+        FakeChangeStream second = new FakeChangeStream();
+        List<BsonDocument> resumeTokens = new CopyOnWriteArrayList<>();
+        DataTablesRepositoryImpl<Product, Long> repository = new DataTablesRepositoryImpl<>(getEntityInformation(Product.class), mongoTemplate);
+        repository.configure(ProductRepository.class, false);
+        repository.changeStreamSource = (pipeline, query, resumeToken) -> {
+            if (resumeToken == null) {
+                return first;
+            }
+            resumeTokens.add(resumeToken);
+            if (resumeTokens.size() == 1) {
+                return second;
+            }
+            // ChangeStreamHistoryLost
+            throw new MongoCommandException(new BsonDocument("ok", new BsonInt32(0)).append("code", new BsonInt32(286))
+                    .append("errmsg", new BsonString("history lost")), new ServerAddress());
+        };
+
+        List<DataTablesDelta<String>> deltas = new CopyOnWriteArrayList<>();
+        DataTablesSubscription subscription = repository.subscribe(getDefaultInput(), Product::getLabel, deltas::add);
+
+        mongoTemplate.updateFirst(query(where("id").is(2L)), Update.update("label", "product2bis"), Product.class);
+        first.add(change("update", 2L));
+        awaitDeltas(deltas, 1);
+
+        // resumed after the last change
+        first.fail();
+        mongoTemplate.updateFirst(query(where("id").is(1L)), Update.update("label", "product1bis"), Product.class);
+        second.add(change("update", 1L));
+        awaitDeltas(deltas, 2);
+        assertThat(resumeTokens).containsExactly(new BsonDocument("_data", new BsonString("update2")));
+
+        // the resume token is refused
+        second.fail();
+        awaitDeltas(deltas, 3);
+        for (int i = 0; i < 50 && !subscription.isClosed(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(subscription.isClosed()).isTrue();
+        assertThat(deltas).containsExactly(
+                new DataTablesDelta<>(DataTablesDelta.Type.UPDATED, 2L, "product2bis"),
+                new DataTablesDelta<>(DataTablesDelta.Type.UPDATED, 1L, "product1bis"),
+                new DataTablesDelta<>(DataTablesDelta.Type.RESET, null, null));
+        repository.close();
+    }
+
+    private static void awaitDeltas(List<?> deltas, int size) throws InterruptedException {
+        for (int i = 0; i < 50 && deltas.size() < size; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(deltas).hasSize(size);
+    }
+
+    /**
+     * Returns a change event of the given product, with its current document looked up like {@code updateLookup}.
+     */
+    private ChangeStreamDocument<Document> change(String operationType, long id) {
+        BsonDocument event = new BsonDocument("_id", new BsonDocument("_data", new BsonString(operationType + id)))
+                .append("operationType", new BsonString(operationType))
+                .append("ns", new BsonDocument("db", new BsonString(mongoTemplate.getDb().getName()))
+                        .append("coll", new BsonString(mongoTemplate.getCollectionName(Product.class))))
+                .append("documentKey", new BsonDocument("_id", new BsonInt64(id)));
+        Document fullDocument = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Product.class))
+                .find(new Document("_id", id)).first();
+        if (fullDocument != null) {
+            event.append("fullDocument", fullDocument.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry()));
+        }
+        return ChangeStreamDocument.createCodec(Document.class, MongoClientSettings.getDefaultCodecRegistry())
+                .decode(new BsonDocumentReader(event), DecoderContext.builder().build());
+    }
+
+    static final class FakeChangeStream implements MongoChangeStreamCursor<ChangeStreamDocument<Document>> {
+
+        private final BlockingQueue<ChangeStreamDocument<Document>> changes = new LinkedBlockingQueue<>();
+        private volatile boolean closed;
+        private volatile boolean failed;
+        private volatile BsonDocument resumeToken;
+
+        @SafeVarargs
+        final void add(ChangeStreamDocument<Document>... changes) {
+            this.changes.addAll(asList(changes));
+        }
+
+        /**
+         * Fails the next calls, like a lost connection.
+         */
+        void fail() {
+            failed = true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!closed && changes.isEmpty()) {
+                if (failed) {
+                    throw new MongoException("Connection reset");
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return !closed;
+        }
+
+        @Override
+        public ChangeStreamDocument<Document> next() {
+            ChangeStreamDocument<Document> change = changes.remove();
+            resumeToken = change.getResumeToken();
+            return change;
+        }
+
+        @Override
+        public ChangeStreamDocument<Document> tryNext() {
+            ChangeStreamDocument<Document> change = changes.poll();
+            if (change != null) {
+                resumeToken = change.getResumeToken();
+            }
+            return change;
+        }
+
+        @Override
+        public int available() {
+            return changes.size();
+        }
+
+        @Override
+        public BsonDocument getResumeToken() {
+            return resumeToken;
+        }
+
+        @Override
+        public ServerCursor getServerCursor() {
+            return null;
+        }
+
+        @Override
+        public ServerAddress getServerAddress() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void searchIndex() {
+        initIndexedProducts();
+        assertThat(indexedProductRepository.rebuildSearchIndex()).isEqualTo(4);
+
+        // every searched word, anywhere in the columns, regardless of the case and the accents
+        assertThat(searchIndexedProducts(indexedProductRepository, "creme", true)).containsExactly(1L);
+        assertThat(searchIndexedProducts(indexedProductRepository, "apple", true)).containsExactly(2L, 3L);
+        assertThat(searchIndexedProducts(indexedProductRepository, "pie dessert", true)).containsExactly(2L);
+        // a word longer than the substrings may match several words
+        assertThat(searchIndexedProducts(indexedProductRepository, "papa", true)).containsExactly(4L);
+        // without any searchable column, the global search is ignored
+        assertThat(searchIndexedProducts(indexedProductRepository, "apple", false)).containsExactly(1L, 2L, 3L, 4L);
+    }
+
+    @Test
+    public void searchIndexMissing() {
+        initIndexedProducts();
+        mongoTemplate.indexOps(IndexedProduct.class).dropAllIndexes();
+        DataTablesRepositoryImpl<IndexedProduct, Long> repository =
+                new DataTablesRepositoryImpl<>(getEntityInformation(IndexedProduct.class), mongoTemplate);
+        repository.configure(IndexedProductRepository.class, true);
+
+        // until the index is built, the values starting with the search are matched
+        assertThat(searchIndexedProducts(repository, "Apple", true)).containsExactly(2L);
+        assertThat(searchIndexedProducts(repository, "apple", true)).isEmpty();
+
+        repository.rebuildSearchIndex();
+        assertThat(searchIndexedProducts(repository, "apple", true)).containsExactly(2L, 3L);
+        repository.close();
+    }
+
+    private void initIndexedProducts() {
+        indexedProductRepository.deleteAll();
+        indexedProductRepository.save(new IndexedProduct(1, "Crème brûlée", "dessert"));
+        indexedProductRepository.save(new IndexedProduct(2, "Apple pie", "dessert"));
+        indexedProductRepository.save(new IndexedProduct(3, "Pineapple juice", "drink"));
+        indexedProductRepository.save(new IndexedProduct(4, "Paper tapas", "snack"));
+    }
+
+    private List<Long> searchIndexedProducts(DataTablesRepository<IndexedProduct, Long> repository, String search, boolean searchable) {
+        DataTablesInput input = new DataTablesInput();
+        input.setColumns(asList(
+                createColumn("id", true, false),
+                createColumn("label", true, searchable),
+                createColumn("category", true, searchable)
+        ));
+        input.setOrder(singletonList(new DataTablesInput.Order(0, DataTablesInput.Order.Direction.asc)));
+        input.setSearch(new DataTablesInput.Search(search));
+
+        DataTablesOutput<Long> output = repository.findAll(input, IndexedProduct::getId);
+        assertThat(output.getError()).isNull();
+        return output.getData();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> MappingMongoEntityInformation<T, Long> getEntityInformation(Class<T> type) {
+        return new MappingMongoEntityInformation<>((MongoPersistentEntity<T>) mongoTemplate.getConverter()
+                .getMappingContext().getRequiredPersistentEntity(type));
+    }
+
+    @Test
+    public void serialization() throws Exception {
+        DataTablesInput input = getDefaultInput();
+        input.setOrder(singletonList(new DataTablesInput.Order(0, DataTablesInput.Order.Direction.asc)));
+
+        DataTablesOutput<String> output = productRepository.findAll(input, Product::getLabel);
+        ObjectMapper mapper = new ObjectMapper();
+        assertThat(mapper.writerWithView(DataTablesOutput.View.class).writeValueAsString(output)).isEqualTo(
+                "{\"draw\":1,\"recordsTotal\":3,\"recordsFiltered\":3,\"hasNext\":false," +
+                        "\"data\":[\"product1\",\"product2\",\"product3\"]}");
+        assertThat(mapper.writerWithView(String.class).writeValueAsString(output)).isEqualTo("{}");
+
+        tools.jackson.databind.ObjectMapper jackson3Mapper = tools.jackson.databind.json.JsonMapper.builder().build();
+        assertThat(jackson3Mapper.writerWithView(DataTablesOutput.View.class).writeValueAsString(output)).isEqualTo(
+                "{\"draw\":1,\"recordsTotal\":3,\"recordsFiltered\":3,\"hasNext\":false," +
+                        "\"data\":[\"product1\",\"product2\",\"product3\"]}");
+        assertThat(jackson3Mapper.writerWithView(String.class).writeValueAsString(output)).isEqualTo("{}");
+    }
+}
@@ -20,4 +20,9 @@ public class TestConfiguration {
     public MongoTemplate mongoTemplate() {
         return new MongoTemplate(mongoClient(), "test");
     }
+
+    @Bean
+    public DataTablesSearchIndexListener dataTablesSearchIndexListener() {
+        return new DataTablesSearchIndexListener(mongoTemplate().getConverter());
+    }
 }
\ No newline at end of file